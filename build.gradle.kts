@@ -12,6 +12,8 @@ plugins {
     id("org.jetbrains.intellij") version "0.6.5"
     // gradle-changelog-plugin - read more: https://github.com/JetBrains/gradle-changelog-plugin
     id("org.jetbrains.changelog") version "0.6.2"
+    // JMH benchmarks - read more: https://github.com/melix/jmh-gradle-plugin
+    id("me.champeau.gradle.jmh") version "0.5.3"
     // detekt linter - read more: https://detekt.github.io/detekt/gradle.html
     // id("io.gitlab.arturbosch.detekt") version "1.14.2"
     // ktlint linter - read more: https://github.com/JLLeitschuh/ktlint-gradle
@@ -58,6 +60,29 @@ intellij {
     setPlugins(*platformPlugins.split(',').map(String::trim).filter(String::isNotEmpty).toTypedArray())
 }
 
+// Configure JMH benchmarks of the show usages data path in src/jmh, run by `gradle jmh`.
+// They use the platform classes the plugin compiles against, but need no running IDE.
+configurations["jmhImplementation"].extendsFrom(configurations["compileOnly"])
+
+jmh {
+    jmhVersion = "1.27"
+    benchmarkMode = listOf("thrpt")
+    profilers = listOf("gc")
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    resultFormat = "JSON"
+    duplicateClassesStrategy = DuplicatesStrategy.WARN
+}
+
+// The headless navigation benchmark in src/benchmark is a separate development plugin depending on this one,
+// it is installed into the sandbox only by `gradle runIde -PznaviBenchmark=...` and is never published.
+val benchmark: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets["main"].output
+    runtimeClasspath += sourceSets["main"].output
+}
+configurations["benchmarkImplementation"].extendsFrom(configurations["compileOnly"])
+
 // Configure detekt plugin.
 // Read more: https://detekt.github.io/detekt/kotlindsl.html
 // detekt {
@@ -113,6 +138,51 @@ tasks {
         )
     }
 
+    // Navigation performance tests are slow, they run only by the perfTest task
+    test {
+        exclude("**/perf/**")
+    }
+
+    register<Test>("perfTest") {
+        description = "Runs navigation performance tests against generated fixtures."
+        group = "verification"
+        testClassesDirs = sourceSets["test"].output.classesDirs
+        classpath = sourceSets["test"].runtimeClasspath
+        include("**/perf/**")
+        systemProperty("idea.performance.tests", "true")
+        maxHeapSize = "2g"
+        shouldRunAfter(test)
+    }
+
+    val benchmarkJar by registering(Jar::class) {
+        archiveBaseName.set("znavi-benchmark")
+        from(benchmark.output)
+    }
+
+    prepareSandbox {
+        if (project.hasProperty("znaviBenchmark")) {
+            from(benchmarkJar) {
+                into("znavi-benchmark/lib")
+            }
+        }
+    }
+
+    // `gradle runIde -PznaviBenchmark="run <project>"` runs the headless navigation benchmark instead of the IDE
+    runIde {
+        (findProperty("znaviBenchmark") as String?)?.let { benchmark ->
+            args = listOf("znavi-benchmark") + benchmark.split(' ').filter(String::isNotEmpty)
+            systemProperty("java.awt.headless", "true")
+        }
+    }
+
+    register<JavaExec>("generateBenchmarkProject") {
+        description = "Generates a multi-module project for the navigation benchmark, options by -PbenchmarkProject."
+        group = "verification"
+        main = "com.github.volkov.znavi.benchmark.ProjectGenerator"
+        classpath = benchmark.runtimeClasspath
+        args = ((findProperty("benchmarkProject") as String?) ?: "$buildDir/benchmark-project").split(' ').filter(String::isNotEmpty)
+    }
+
     runPluginVerifier {
         ideVersions(pluginVerifierIdeVersions)
     }
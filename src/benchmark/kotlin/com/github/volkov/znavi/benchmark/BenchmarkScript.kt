@@ -0,0 +1,68 @@
+package com.github.volkov.znavi.benchmark
+
+import java.io.File
+
+/**
+ * Navigation measured by [NavigationBenchmarkStarter] for a target method.
+ */
+enum class BenchmarkOperation {
+    /** Next usage action (alt-U) from the target declaration, through the popup code and the navigation. */
+    USAGES,
+
+    /** Caller graph of the target (alt-H data), grouped by calling function. */
+    CALLERS,
+
+    /** Go to parameter declaration (alt-O) resolution from every call site of the target. */
+    PARAMETER
+}
+
+/**
+ * Method [parameters] of [className] called [methodName], written as `com.example.Class#method/1`.
+ */
+data class BenchmarkTarget(val className: String, val methodName: String, val parameters: Int) {
+    override fun toString(): String = "$className#$methodName/$parameters"
+
+    companion object {
+        @JvmStatic
+        fun parse(text: String): BenchmarkTarget {
+            val hash = text.indexOf('#')
+            val slash = text.lastIndexOf('/')
+            require(hash > 0 && slash > hash + 1) { "Target is expected as class#method/parameter count: $text" }
+            val parameters = text.substring(slash + 1).toIntOrNull() ?: throw IllegalArgumentException("Parameter count of $text")
+            return BenchmarkTarget(text.substring(0, hash), text.substring(hash + 1, slash), parameters)
+        }
+    }
+}
+
+class BenchmarkStep(val operation: BenchmarkOperation, val target: BenchmarkTarget, val iterations: Int) {
+    override fun toString(): String = "${operation.name.toLowerCase()} $target"
+}
+
+/**
+ * Steps run one after another, a line per step: `operation target [iterations]`, lines starting with `#` are comments.
+ */
+class BenchmarkScript(val steps: List<BenchmarkStep>) {
+
+    companion object {
+        private const val DEFAULT_ITERATIONS = 5
+
+        @JvmStatic
+        fun parse(text: String): BenchmarkScript = BenchmarkScript(text.lines()
+            .map { it.trim() }
+            .filter { it.isNotEmpty() && !it.startsWith('#') }
+            .map { line ->
+                val words = line.split(Regex("\\s+"))
+                require(words.size in 2..3) { "Step is expected as operation target [iterations]: $line" }
+                val operation = try {
+                    BenchmarkOperation.valueOf(words[0].toUpperCase())
+                } catch (e: IllegalArgumentException) {
+                    throw IllegalArgumentException("Unknown operation ${words[0]}, expected one of ${BenchmarkOperation.values().toList()}")
+                }
+                val iterations = words.getOrNull(2)?.let { it.toIntOrNull() ?: throw IllegalArgumentException("Iterations of $line") }
+                BenchmarkStep(operation, BenchmarkTarget.parse(words[1]), iterations ?: DEFAULT_ITERATIONS)
+            })
+
+        @JvmStatic
+        fun load(file: File): BenchmarkScript = parse(file.readText())
+    }
+}
@@ -0,0 +1,180 @@
+package com.github.volkov.znavi.benchmark
+
+import com.github.volkov.znavi.callers.CallerGraph
+import com.github.volkov.znavi.diagnostics.LatencyHistogram
+import com.github.volkov.znavi.diagnostics.NavigationKind
+import com.github.volkov.znavi.diagnostics.NavigationStats
+import com.github.volkov.znavi.parameters.ParameterResolver
+import com.github.volkov.znavi.search.UsageOffset
+import com.intellij.openapi.actionSystem.ActionManager
+import com.intellij.openapi.actionSystem.ActionPlaces
+import com.intellij.openapi.actionSystem.CommonDataKeys
+import com.intellij.openapi.actionSystem.ex.ActionUtil
+import com.intellij.openapi.actionSystem.impl.SimpleDataContext
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.editor.Editor
+import com.intellij.openapi.editor.EditorFactory
+import com.intellij.openapi.progress.EmptyProgressIndicator
+import com.intellij.openapi.project.Project
+import com.intellij.psi.JavaPsiFacade
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiFile
+import com.intellij.psi.PsiManager
+import com.intellij.psi.PsiNameIdentifierOwner
+import com.intellij.psi.search.GlobalSearchScope
+import java.util.concurrent.TimeUnit
+
+/**
+ * Latency of a step: [latency] of its iterations and [results] (usages, call sites, parameters) found by the last one,
+ * or by all navigations of a kind for a replayed session.
+ */
+class StepResult(val name: String, val latency: LatencyHistogram = LatencyHistogram(), var results: Int = 0) {
+
+    fun toCsv(): String = "$name,${latency.size},${NavigationStats.format(latency.percentileMillis(50.0))}," +
+        "${NavigationStats.format(latency.percentileMillis(95.0))},${NavigationStats.format(latency.maxMillis)}," +
+        "${NavigationStats.format(latency.meanMillis)},$results"
+
+    companion object {
+        const val CSV_HEADER = "step,iterations,p50_ms,p95_ms,max_ms,mean_ms,results"
+        private const val DIFF_HEADER = "step,baseline_p50_ms,p50_ms,p50_change,baseline_p95_ms,p95_ms,p95_change"
+
+        /**
+         * p50 and p95 of [results] against the steps of the same name in [baselineCsv], e.g. written by another
+         * plugin build; steps missing in the baseline are left out.
+         */
+        @JvmStatic
+        fun diff(baselineCsv: String, results: List<StepResult>): String = buildString {
+            val baseline = baselineCsv.lines().drop(1).filter { it.isNotBlank() }.map { it.split(',') }.associateBy { it[0] }
+            append(DIFF_HEADER).append('\n')
+            for (result in results) {
+                val base = baseline[result.name] ?: continue
+                append(result.name)
+                for ((column, percentile) in listOf(2 to 50.0, 3 to 95.0)) {
+                    val before = base[column].toDouble()
+                    val after = result.latency.percentileMillis(percentile)
+                    val change = if (before == 0.0) "-" else NavigationStats.format((after - before) / before * 100) + "%"
+                    append(',').append(NavigationStats.format(before)).append(',').append(NavigationStats.format(after)).append(',').append(change)
+                }
+                append('\n')
+            }
+        }
+    }
+}
+
+/**
+ * Runs [BenchmarkStep]s against an open, indexed project. Should be called in a background thread:
+ * actions are performed in the EDT, searches are waited for in the calling thread.
+ */
+class NavigationBenchmarkRunner(private val project: Project) {
+
+    /**
+     * Usage steps record the latency the next usage action measures, iterations falling back to the platform search
+     * are left out. Caller and parameter steps call the searches directly and record their time.
+     */
+    fun run(step: BenchmarkStep): StepResult {
+        val target = resolve(step.target)
+        val result = StepResult(step.toString())
+        val callSites = if (step.operation == BenchmarkOperation.PARAMETER) callSites(target) else emptyList()
+        val (file, nameOffset) = ReadAction.compute<Pair<PsiFile, Int>, RuntimeException> {
+            target.containingFile to ((target as? PsiNameIdentifierOwner)?.nameIdentifier?.textOffset ?: target.textOffset)
+        }
+        repeat(step.iterations) {
+            if (step.operation == BenchmarkOperation.USAGES) {
+                // the action measures itself, editor creation and waiting for the search are not included
+                val measured = action(NEXT_USAGE_ACTION, NavigationKind.NEXT_USAGE, file, nameOffset) ?: return@repeat
+                result.latency.record(measured.nanos)
+                result.results = measured.results
+                return@repeat
+            }
+            val start = System.nanoTime()
+            result.results = when (step.operation) {
+                BenchmarkOperation.CALLERS -> callSites(target).size
+                else -> parameters(callSites)
+            }
+            result.latency.record(System.nanoTime() - start)
+        }
+        return result
+    }
+
+    fun resolve(target: BenchmarkTarget): PsiElement = ReadAction.compute<PsiElement, RuntimeException> {
+        val psiClass = JavaPsiFacade.getInstance(project).findClass(target.className, GlobalSearchScope.projectScope(project))
+            ?: throw IllegalArgumentException("Class ${target.className} is not found")
+        val method = psiClass.findMethodsByName(target.methodName, false)
+            .firstOrNull { it.parameterList.parametersCount == target.parameters }
+            ?: throw IllegalArgumentException("Method $target is not found")
+        method.navigationElement
+    }
+
+    /**
+     * Runs the action [actionId] in an editor of [file] with the caret at [offset] and waits until the action
+     * finishes its [kind] latency measurement. Returns the latency and the results the action measured itself,
+     * so editor creation and waiting here are not included, or `null` if the action abandoned the measurement
+     * (e.g. fell back to the platform search).
+     */
+    fun action(actionId: String, kind: NavigationKind, file: PsiFile, offset: Int): Measured? {
+        val stats = NavigationStats.getInstance().stats(kind)
+        val searches = stats.latency.size
+        val abandoned = stats.abandoned.get()
+        val usages = stats.usages.get()
+        var editor: Editor? = null
+        ApplicationManager.getApplication().invokeAndWait {
+            val document = PsiDocumentManager.getInstance(project).getDocument(file)
+                ?: throw IllegalArgumentException("No document for ${file.name}")
+            val created = EditorFactory.getInstance().createEditor(document, project)
+            editor = created
+            created.caretModel.moveToOffset(offset)
+            val context = SimpleDataContext.getSimpleContext(mapOf(
+                CommonDataKeys.PROJECT.name to project,
+                CommonDataKeys.EDITOR.name to created,
+                CommonDataKeys.PSI_FILE.name to file,
+                CommonDataKeys.VIRTUAL_FILE.name to file.virtualFile
+            ), null)
+            ActionUtil.invokeAction(ActionManager.getInstance().getAction(actionId), context, ActionPlaces.UNKNOWN, null, null)
+        }
+        try {
+            val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS)
+            while (stats.latency.size == searches) {
+                if (stats.abandoned.get() != abandoned) return null
+                check(System.nanoTime() < deadline) { "${kind.title} in ${file.name} at $offset did not finish in $TIMEOUT_SECONDS s" }
+                Thread.sleep(1)
+            }
+        } finally {
+            editor?.let { ApplicationManager.getApplication().invokeAndWait { EditorFactory.getInstance().releaseEditor(it) } }
+        }
+        return Measured(stats.lastNanos.get(), (stats.usages.get() - usages).toInt())
+    }
+
+    fun callSites(element: PsiElement): List<UsageOffset> =
+        CallerGraph.getInstance(project).callers(element, EmptyProgressIndicator()).flatMap { it.callSites }
+
+    /**
+     * Resolves the parameter at up to [MAX_CALL_SITES] of [callSites], the later iterations hit the per file caches
+     * like repeated alt-O in the same file. Returns the number of resolved parameters.
+     */
+    fun parameters(callSites: List<UsageOffset>): Int {
+        val psiManager = PsiManager.getInstance(project)
+        return callSites.take(MAX_CALL_SITES).count { site ->
+            val file = ReadAction.compute<PsiFile?, RuntimeException> { psiManager.findFile(site.file) }
+            file != null && parameter(file, site.offset)
+        }
+    }
+
+    fun parameter(file: PsiFile, offset: Int): Boolean =
+        ReadAction.compute<Boolean, RuntimeException> { ParameterResolver.findParameter(file, offset) != null }
+
+    /**
+     * Latency and number of results measured by an action.
+     */
+    class Measured(val nanos: Long, val results: Int)
+
+    companion object {
+        const val NEXT_USAGE_ACTION = "com.github.volkov.znavi.ZNaviDownAction"
+        const val PREVIOUS_USAGE_ACTION = "com.github.volkov.znavi.ZNaviUpAction"
+        const val CALLERS_ACTION = "com.github.volkov.znavi.ZNaviLeftAction"
+        const val PARAMETER_ACTION = "com.github.volkov.znavi.ZNaviGoToParameterDeclaration"
+        private const val MAX_CALL_SITES = 100
+        private const val TIMEOUT_SECONDS = 120L
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.volkov.znavi.benchmark
+
+import com.github.volkov.znavi.diagnostics.SessionEvent
+import com.intellij.ide.impl.ProjectUtil
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.application.ApplicationStarter
+import com.intellij.openapi.project.DumbService
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.project.ex.ProjectManagerEx
+import java.io.File
+import kotlin.system.exitProcess
+
+/**
+ * Headless navigation benchmark, `idea znavi-benchmark <command>`:
+ *
+ * - `generate <directory> [options]` writes a project by [ProjectGenerator], see [GeneratorConfig.USAGE];
+ * - `run <project> [script]` opens the project, waits for indexing and runs the [BenchmarkScript]
+ *   (`benchmark.txt` of the project by default), the latency of every step is printed;
+ * - `replay <project> <session>` runs a session recorded by `SessionRecorder` by [SessionReplayer],
+ *   the recorded and replayed latency of every navigation kind is printed.
+ *
+ * Both take `--out file` to write the results as CSV and `--baseline file` to print the change of p50 and p95
+ * against results written before, e.g. by another plugin build.
+ *
+ * From the sources: `gradle runIde -PznaviBenchmark="run /path/to/project"`.
+ */
+class NavigationBenchmarkStarter : ApplicationStarter {
+
+    override fun getCommandName(): String = COMMAND
+
+    override fun getRequiredModality(): Int = ApplicationStarter.NOT_IN_EDT
+
+    override fun main(args: List<String>) {
+        val exitCode = try {
+            when (args.getOrNull(1)) {
+                "generate" -> generate(args.drop(2))
+                "run" -> run(args.drop(2))
+                "replay" -> replay(args.drop(2))
+                else -> throw IllegalArgumentException(USAGE)
+            }
+            0
+        } catch (e: IllegalArgumentException) {
+            System.err.println(e.message)
+            1
+        } catch (e: Throwable) {
+            e.printStackTrace()
+            2
+        }
+        exitProcess(exitCode)
+    }
+
+    private fun generate(args: List<String>) {
+        val directory = args.firstOrNull() ?: throw IllegalArgumentException(USAGE)
+        val config = GeneratorConfig.parse(args.drop(1))
+        ProjectGenerator(config).generate(File(directory))
+        println("Generated $config in $directory")
+    }
+
+    private fun run(args: List<String>) {
+        val options = Options(args)
+        val projectDir = options.positional.firstOrNull() ?: throw IllegalArgumentException(USAGE)
+        val script = BenchmarkScript.load(File(options.positional.getOrNull(1) ?: File(projectDir, ProjectGenerator.SCRIPT).path))
+        withProject(projectDir) { project ->
+            val runner = NavigationBenchmarkRunner(project)
+            println(StepResult.CSV_HEADER)
+            val results = script.steps.map { step ->
+                runner.run(step).also { println(it.toCsv()) }
+            }
+            report(results, options)
+        }
+    }
+
+    private fun replay(args: List<String>) {
+        val options = Options(args)
+        if (options.positional.size != 2) throw IllegalArgumentException(USAGE)
+        val events = SessionEvent.load(File(options.positional[1]))
+        withProject(options.positional[0]) { project ->
+            val replayer = SessionReplayer(project)
+            val results = replayer.replay(events)
+            println(StepResult.CSV_HEADER)
+            results.forEach { println(it.toCsv()) }
+            println("Replayed ${events.size - replayer.skipped} of ${events.size} navigations")
+            report(results, options)
+        }
+    }
+
+    private fun report(results: List<StepResult>, options: Options) {
+        options.out?.let { File(it).writeText(results.joinToString("\n", "${StepResult.CSV_HEADER}\n", "\n") { result -> result.toCsv() }) }
+        options.baseline?.let { print(StepResult.diff(File(it).readText(), results)) }
+    }
+
+    private fun withProject(path: String, action: (Project) -> Unit) {
+        val project = openProject(path)
+        try {
+            action(project)
+        } finally {
+            ApplicationManager.getApplication().invokeAndWait { ProjectManagerEx.getInstanceEx().forceCloseProject(project) }
+        }
+    }
+
+    /**
+     * `--out file` and `--baseline file` options and the rest of the arguments.
+     */
+    private class Options(args: List<String>) {
+        val out: String?
+        val baseline: String?
+        val positional = ArrayList<String>()
+
+        init {
+            val values = HashMap<String, String>()
+            var i = 0
+            while (i < args.size) {
+                if (args[i] == "--out" || args[i] == "--baseline") {
+                    values[args[i]] = args.getOrNull(i + 1) ?: throw IllegalArgumentException(USAGE)
+                    i += 2
+                } else {
+                    positional.add(args[i++])
+                }
+            }
+            out = values["--out"]
+            baseline = values["--baseline"]
+        }
+    }
+
+    companion object {
+        const val COMMAND = "znavi-benchmark"
+        private const val USAGE =
+            "Usage: $COMMAND generate <directory> ${GeneratorConfig.USAGE}\n" +
+                "       $COMMAND run <project> [script] [--out file] [--baseline file]\n" +
+                "       $COMMAND replay <project> <session> [--out file] [--baseline file]"
+
+        /**
+         * Opens the project at [path] and waits until it is indexed, should be called in a background thread.
+         */
+        @JvmStatic
+        fun openProject(path: String): Project {
+            var project: Project? = null
+            ApplicationManager.getApplication().invokeAndWait { project = ProjectUtil.openProject(path, null, true) }
+            val opened = project ?: throw IllegalArgumentException("Can't open project $path")
+            DumbService.getInstance(opened).waitForSmartMode()
+            return opened
+        }
+    }
+}
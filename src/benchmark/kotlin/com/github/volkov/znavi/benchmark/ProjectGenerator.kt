@@ -0,0 +1,253 @@
+package com.github.volkov.znavi.benchmark
+
+import java.io.File
+import java.io.Writer
+
+enum class GeneratedLanguage { JAVA, KOTLIN, MIXED }
+
+/**
+ * Size of a generated project: [modules] of [files] classes with [methods] methods of [overloads] overloads each.
+ *
+ * Files are assigned to [depth] layers round robin, the first overload of every method calls methods of the
+ * layer below in its own module and in the module it depends on. Every overload of a method below the top layer
+ * is called [fanIn] times, so the caller graph of a layer 0 method is [depth] calls deep.
+ * Module `m<i>` depends on `m<i-1>`; with [GeneratedLanguage.MIXED] odd modules are kotlin.
+ */
+data class GeneratorConfig(
+    val modules: Int = 10,
+    val files: Int = 50,
+    val methods: Int = 10,
+    val overloads: Int = 2,
+    val fanIn: Int = 10,
+    val depth: Int = 5,
+    val language: GeneratedLanguage = GeneratedLanguage.MIXED
+) {
+    init {
+        require(modules > 0 && files > 0 && methods > 0 && overloads > 0 && fanIn >= 0 && depth > 0) { "Invalid size: $this" }
+    }
+
+    companion object {
+        const val USAGE =
+            "[--modules N] [--files N] [--methods N] [--overloads N] [--fan-in N] [--depth N] [--language java|kotlin|mixed]"
+
+        /**
+         * Parses `--name value` options, the defaults are used for missing ones.
+         */
+        @JvmStatic
+        fun parse(args: List<String>): GeneratorConfig {
+            require(args.size % 2 == 0) { "Options are expected in pairs: $USAGE" }
+            val options = args.chunked(2).associate { (name, value) -> name to value }
+            val unknown = options.keys - OPTIONS
+            require(unknown.isEmpty()) { "Unknown options $unknown: $USAGE" }
+            val defaults = GeneratorConfig()
+            fun int(name: String, default: Int) = options[name]?.let { it.toIntOrNull() ?: throw IllegalArgumentException("$name: $it") } ?: default
+            return GeneratorConfig(
+                int("--modules", defaults.modules),
+                int("--files", defaults.files),
+                int("--methods", defaults.methods),
+                int("--overloads", defaults.overloads),
+                int("--fan-in", defaults.fanIn),
+                int("--depth", defaults.depth),
+                options["--language"]?.let { GeneratedLanguage.valueOf(it.toUpperCase()) } ?: defaults.language
+            )
+        }
+
+        private val OPTIONS = setOf("--modules", "--files", "--methods", "--overloads", "--fan-in", "--depth", "--language")
+    }
+}
+
+/**
+ * Writes a multi-module java/kotlin project of the given [config] with `.idea` module files, so it opens without
+ * a build system import, and a default [BenchmarkScript] in [SCRIPT]. The output depends on the config only.
+ *
+ * Parameters are `int` and `long`, so the project resolves without a JDK; kotlin modules get the kotlin standard
+ * library the generator itself runs with.
+ */
+class ProjectGenerator(private val config: GeneratorConfig) {
+
+    private val kotlinStdlib: File? by lazy {
+        File(KotlinVersion::class.java.protectionDomain.codeSource.location.toURI()).takeIf { it.isFile }
+    }
+
+    fun generate(root: File) {
+        require(!root.exists() || root.list().isNullOrEmpty()) { "$root is not empty" }
+        val hasKotlin = (0 until config.modules).any { isKotlin(it) }
+        for (module in 0 until config.modules) {
+            for (file in 0 until config.files) {
+                val source = File(root, "m$module/src/${packageName(module, layer(file)).replace('.', '/')}/${className(module, file)}" +
+                    if (isKotlin(module)) ".kt" else ".java")
+                source.parentFile.mkdirs()
+                source.bufferedWriter().use { writeClass(it, module, file) }
+            }
+            write(File(root, "m$module/m$module.iml"), moduleXml(module, hasKotlin))
+        }
+        write(File(root, ".idea/modules.xml"), modulesXml())
+        write(File(root, ".idea/misc.xml"), MISC_XML)
+        val stdlib = kotlinStdlib
+        if (hasKotlin && stdlib != null) {
+            stdlib.copyTo(File(root, "lib/$STDLIB_JAR"))
+            write(File(root, ".idea/libraries/kotlin_stdlib.xml"), LIBRARY_XML)
+        }
+        write(File(root, SCRIPT), defaultScript())
+    }
+
+    private fun writeClass(out: Writer, module: Int, file: Int) {
+        val kotlin = isKotlin(module)
+        val layer = layer(file)
+        out.write(if (kotlin) "package ${packageName(module, layer)}\n\n" else "package ${packageName(module, layer)};\n\n")
+        out.write(if (kotlin) "object ${className(module, file)} {\n" else "public class ${className(module, file)} {\n")
+        for (method in 0 until config.methods) {
+            for (overload in 0 until config.overloads) {
+                val parameters = (0..overload).joinToString(", ") { i ->
+                    when {
+                        kotlin -> "p$i: ${if (i % 2 == 0) "Int" else "Long"}"
+                        else -> "${if (i % 2 == 0) "int" else "long"} p$i"
+                    }
+                }
+                out.write(if (kotlin) "    @JvmStatic\n    fun method$method($parameters) {\n" else "    public static void method$method($parameters) {\n")
+                if (overload == 0 && layer > 0) {
+                    writeCalls(out, module, layer, callerIndex(layer, file, method), kotlin)
+                }
+                out.write("    }\n\n")
+            }
+        }
+        out.write("}\n")
+    }
+
+    /**
+     * Calls of the caller [index] of [layer] in [module]: targets of the layer below in this module take the first
+     * [callers] slots of a call group, targets of the previous module the next ones; a target's calls go round robin
+     * over the slots of its group.
+     */
+    private fun writeCalls(out: Writer, module: Int, layer: Int, index: Int, kotlin: Boolean) {
+        val callers = callersIn(layer)
+        val targetModules = if (module > 0) listOf(module to index, module - 1 to callers + index) else listOf(module to index)
+        for ((targetModule, slot) in targetModules) {
+            val group = if (targetModule + 1 < config.modules) 2 * callers else callers
+            val calls = targetsIn(layer - 1) * config.fanIn
+            var call = slot
+            while (call < calls) {
+                val target = call / config.fanIn
+                out.write("        ")
+                out.write(targetCall(targetModule, layer - 1, target))
+                out.write(if (kotlin) "\n" else ";\n")
+                call += group
+            }
+        }
+    }
+
+    private fun targetCall(module: Int, layer: Int, target: Int): String {
+        val perFile = config.methods * config.overloads
+        val file = layer + config.depth * (target / perFile)
+        val method = target / config.overloads % config.methods
+        val overload = target % config.overloads
+        val arguments = (0..overload).joinToString(", ") { if (it % 2 == 0) "$it" else "${it}L" }
+        return "${packageName(module, layer)}.${className(module, file)}.method$method($arguments)"
+    }
+
+    private fun defaultScript(): String = buildString {
+        append("# operation target [iterations], targets are class#method/parameter count\n")
+        val targets = listOf(target(0, 0), target(config.modules - 1, 0), target(config.modules - 1, config.depth - 1))
+        for (operation in BenchmarkOperation.values()) {
+            for (target in targets.distinct()) {
+                append(operation.name.toLowerCase()).append(' ').append(target).append(' ').append(DEFAULT_ITERATIONS).append('\n')
+            }
+        }
+    }
+
+    private fun target(module: Int, layer: Int): String {
+        val file = layer.coerceAtMost(config.files - 1)
+        return "${packageName(module, layer(file))}.${className(module, file)}#method0/1"
+    }
+
+    private fun moduleXml(module: Int, hasKotlin: Boolean): String = buildString {
+        append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+        append("<module type=\"JAVA_MODULE\" version=\"4\">\n")
+        append("  <component name=\"NewModuleRootManager\" inherit-compiler-output=\"true\">\n")
+        append("    <exclude-output />\n")
+        append("    <content url=\"file://\$MODULE_DIR\$\">\n")
+        append("      <sourceFolder url=\"file://\$MODULE_DIR\$/src\" isTestSource=\"false\" />\n")
+        append("    </content>\n")
+        append("    <orderEntry type=\"inheritedJdk\" />\n")
+        append("    <orderEntry type=\"sourceFolder\" forTests=\"false\" />\n")
+        if (module > 0) append("    <orderEntry type=\"module\" module-name=\"m${module - 1}\" />\n")
+        if (hasKotlin && kotlinStdlib != null) append("    <orderEntry type=\"library\" name=\"kotlin-stdlib\" level=\"project\" />\n")
+        append("  </component>\n")
+        append("</module>\n")
+    }
+
+    private fun modulesXml(): String = buildString {
+        append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+        append("<project version=\"4\">\n")
+        append("  <component name=\"ProjectModuleManager\">\n")
+        append("    <modules>\n")
+        for (module in 0 until config.modules) {
+            append("      <module fileurl=\"file://\$PROJECT_DIR\$/m$module/m$module.iml\" filepath=\"\$PROJECT_DIR\$/m$module/m$module.iml\" />\n")
+        }
+        append("    </modules>\n")
+        append("  </component>\n")
+        append("</project>\n")
+    }
+
+    private fun isKotlin(module: Int): Boolean = when (config.language) {
+        GeneratedLanguage.JAVA -> false
+        GeneratedLanguage.KOTLIN -> true
+        GeneratedLanguage.MIXED -> module % 2 == 1
+    }
+
+    private fun layer(file: Int): Int = file % config.depth
+
+    private fun filesIn(layer: Int): Int = if (layer < config.files) (config.files - layer + config.depth - 1) / config.depth else 0
+
+    private fun targetsIn(layer: Int): Int = filesIn(layer) * config.methods * config.overloads
+
+    private fun callersIn(layer: Int): Int = filesIn(layer) * config.methods
+
+    private fun callerIndex(layer: Int, file: Int, method: Int): Int = (file - layer) / config.depth * config.methods + method
+
+    private fun packageName(module: Int, layer: Int) = "com.example.m$module.l$layer"
+
+    private fun className(module: Int, file: Int) = "M${module}L${layer(file)}F$file"
+
+    private fun write(file: File, text: String) {
+        file.parentFile.mkdirs()
+        file.writeText(text)
+    }
+
+    companion object {
+        const val SCRIPT = "benchmark.txt"
+        private const val DEFAULT_ITERATIONS = 10
+        private const val STDLIB_JAR = "kotlin-stdlib.jar"
+
+        private val MISC_XML = """
+            |<?xml version="1.0" encoding="UTF-8"?>
+            |<project version="4">
+            |  <component name="ProjectRootManager" version="2" languageLevel="JDK_11" />
+            |</project>
+            |""".trimMargin()
+
+        private val LIBRARY_XML = """
+            |<component name="libraryTable">
+            |  <library name="kotlin-stdlib">
+            |    <CLASSES>
+            |      <root url="jar://${'$'}PROJECT_DIR${'$'}/lib/$STDLIB_JAR!/" />
+            |    </CLASSES>
+            |  </library>
+            |</component>
+            |""".trimMargin()
+
+        /**
+         * `ProjectGenerator <directory> [options]`, generates a project without starting the IDE.
+         */
+        @JvmStatic
+        fun main(args: Array<String>) {
+            if (args.isEmpty()) {
+                System.err.println("Usage: ProjectGenerator <directory> ${GeneratorConfig.USAGE}")
+                return
+            }
+            val config = GeneratorConfig.parse(args.drop(1))
+            ProjectGenerator(config).generate(File(args[0]))
+            println("Generated $config in ${args[0]}")
+        }
+    }
+}
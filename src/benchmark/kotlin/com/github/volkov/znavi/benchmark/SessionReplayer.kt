@@ -0,0 +1,90 @@
+package com.github.volkov.znavi.benchmark
+
+import com.github.volkov.znavi.diagnostics.NavigationKind
+import com.github.volkov.znavi.diagnostics.SessionEvent
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.project.guessProjectDir
+import com.intellij.openapi.vfs.LocalFileSystem
+import com.intellij.psi.PsiFile
+import com.intellij.psi.PsiManager
+import java.util.concurrent.TimeUnit
+
+/**
+ * Runs the navigations of a session recorded by `SessionRecorder` again against a checkout of the same project,
+ * one after another, with [NavigationBenchmarkRunner].
+ *
+ * Every navigation runs the same action at the same file and caret offset as recorded, files are found by their path
+ * relative to the project directory, the search scope comes from the IDE settings of the checkout rather than from
+ * the recording. The replayed latency is the one the action measures, the same as recorded.
+ * Cancelled navigations, the ones whose file or offset is not found in the checkout and the ones which fall back
+ * to the platform search are [skipped].
+ */
+class SessionReplayer(private val project: Project) {
+
+    private val runner = NavigationBenchmarkRunner(project)
+
+    var skipped = 0
+        private set
+
+    /**
+     * Recorded and replayed latency of each navigation kind, in the order of [NavigationKind].
+     */
+    fun replay(events: List<SessionEvent>): List<StepResult> {
+        val recorded = HashMap<NavigationKind, StepResult>()
+        val replayed = HashMap<NavigationKind, StepResult>()
+        for (event in events) {
+            if (event.cancelled) {
+                skipped++
+                continue
+            }
+            val measured = try {
+                replay(event)
+            } catch (e: IllegalArgumentException) {
+                LOG.warn("Can't replay ${event.toLine()}: ${e.message}")
+                null
+            } catch (e: IllegalStateException) {
+                LOG.warn("Can't replay ${event.toLine()}: ${e.message}")
+                null
+            }
+            if (measured == null) {
+                skipped++
+                continue
+            }
+            val name = event.kind.name.toLowerCase()
+            recorded.getOrPut(event.kind) { StepResult("$name recorded") }.apply {
+                latency.record(TimeUnit.MICROSECONDS.toNanos(event.latencyMicros))
+                results += event.usages
+            }
+            replayed.getOrPut(event.kind) { StepResult("$name replayed") }.apply {
+                latency.record(measured.nanos)
+                results += measured.results
+            }
+        }
+        return NavigationKind.values().flatMap { listOfNotNull(recorded[it], replayed[it]) }
+    }
+
+    private fun replay(event: SessionEvent): NavigationBenchmarkRunner.Measured? {
+        val file = file(event) ?: return null
+        val actionId = when (event.kind) {
+            NavigationKind.NEXT_USAGE -> NavigationBenchmarkRunner.NEXT_USAGE_ACTION
+            NavigationKind.PREVIOUS_USAGE -> NavigationBenchmarkRunner.PREVIOUS_USAGE_ACTION
+            NavigationKind.CALLERS -> NavigationBenchmarkRunner.CALLERS_ACTION
+            NavigationKind.PARAMETER -> NavigationBenchmarkRunner.PARAMETER_ACTION
+        }
+        return runner.action(actionId, event.kind, file, event.offset)
+    }
+
+    private fun file(event: SessionEvent): PsiFile? = ReadAction.compute<PsiFile?, RuntimeException> {
+        val path = event.file ?: return@compute null
+        val virtualFile = project.guessProjectDir()?.findFileByRelativePath(path)
+            ?: LocalFileSystem.getInstance().findFileByPath(path)
+            ?: return@compute null
+        PsiManager.getInstance(project).findFile(virtualFile)?.takeIf { event.offset in 0..it.textLength }
+    }
+
+    companion object {
+        private val LOG = Logger.getInstance(SessionReplayer::class.java)
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.volkov.znavi.ui;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting of the usages hidden by the usage view filters on every rebuild of the popup: the former stream
+ * against {@link UsageRows#count}. A tenth of the usages is hidden, visibility is a set lookup like
+ * {@code UsageViewImpl.isVisible}.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FilteredOutCountBenchmark {
+  private static final int HIDDEN_EACH = 10;
+
+  @Param({"100", "10000", "1000000"})
+  public int size;
+
+  private List<SyntheticRows.Row> rows;
+  private Set<SyntheticRows.Row> visible;
+
+  @Setup
+  public void setup() {
+    rows = SyntheticRows.generate(size, 42);
+    visible = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (int i = 0; i < rows.size(); i++) {
+      if (i % HIDDEN_EACH != 0) visible.add(rows.get(i));
+    }
+  }
+
+  @Benchmark
+  public int stream() {
+    return (int)rows.stream().filter(row -> !visible.contains(row)).count();
+  }
+
+  @Benchmark
+  public int count() {
+    return UsageRows.count(rows, row -> !visible.contains(row));
+  }
+}
@@ -0,0 +1,148 @@
+package com.github.volkov.znavi.ui;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic rows of the show usages table: {@link #USAGES_PER_FILE} usages per file, files of several modules
+ * with the same names, and the separators at the end like in a popup with more usages than a page.
+ */
+final class SyntheticRows {
+  static final int USAGES_PER_FILE = 20;
+  static final int MODULES = 10;
+
+  static final class File {
+    final String name;
+    final String path;
+
+    File(@NotNull String name, @NotNull String path) {
+      this.name = name;
+      this.path = path;
+    }
+  }
+
+  static final class Row {
+    final int weight;
+    final Object usage;
+    final @Nullable File file;
+    final int offset;
+    final @Nullable Node parent;
+
+    Row(int weight, @NotNull Object usage, @Nullable File file, int offset, @Nullable Node parent) {
+      this.weight = weight;
+      this.usage = usage;
+      this.file = file;
+      this.offset = offset;
+      this.parent = parent;
+    }
+
+    @Override
+    public String toString() {
+      return usage.toString();
+    }
+  }
+
+  /**
+   * Group node of the usage view tree: module, package and file groups, the root has no group.
+   */
+  static final class Node {
+    final @Nullable Node parent;
+    final @Nullable String group;
+
+    Node(@Nullable Node parent, @Nullable String group) {
+      this.parent = parent;
+      this.group = group;
+    }
+  }
+
+  static final UsageRowComparator<Row, File> COMPARATOR = new UsageRowComparator<Row, File>() {
+    @Override
+    protected int weight(Row row) {
+      return row.weight;
+    }
+
+    @Override
+    protected Object usage(Row row) {
+      return row.usage;
+    }
+
+    @Override
+    protected @Nullable File file(Row row) {
+      return row.file;
+    }
+
+    @Override
+    protected @NotNull String fileName(@NotNull File file) {
+      return file.name;
+    }
+
+    @Override
+    protected @NotNull String path(@NotNull File file) {
+      return file.path;
+    }
+
+    @Override
+    protected int compareInFile(Row r1, Row r2) {
+      return Integer.compare(r1.offset, r2.offset);
+    }
+  };
+
+  private SyntheticRows() {
+  }
+
+  /**
+   * {@code size} rows in random order, the last three are the separators.
+   */
+  static @NotNull List<Row> generate(int size, long seed) {
+    Random random = new Random(seed);
+    Node root = new Node(null, null);
+    List<Row> rows = new ArrayList<>(size);
+    int usages = Math.max(0, size - 3);
+    Node fileNode = null;
+    File file = null;
+    for (int i = 0; i < usages; i++) {
+      if (i % USAGES_PER_FILE == 0) {
+        int fileIndex = i / USAGES_PER_FILE;
+        int module = fileIndex % MODULES;
+        String pkg = "com.example.p" + fileIndex / 100 % 10;
+        String name = "Caller" + fileIndex / MODULES + ".java";
+        file = new File(name, "/project/module" + module + "/src/" + pkg.replace('.', '/') + "/" + name);
+        Node moduleNode = new Node(root, "module" + module);
+        fileNode = new Node(new Node(moduleNode, pkg), name);
+      }
+      int offset = random.nextInt(100_000);
+      rows.add(new Row(UsageRowComparator.USAGE, new Usage(offset + ": Target.target(" + i + ", \"m" + i + "\");"),
+                       file, offset, fileNode));
+    }
+    for (int i = 0; i < usages; i++) {
+      int j = random.nextInt(usages);
+      Row row = rows.get(i);
+      rows.set(i, rows.get(j));
+      rows.set(j, row);
+    }
+    rows.add(new Row(UsageRowComparator.MORE_USAGES, new Usage("more usages"), null, 0, null));
+    rows.add(new Row(UsageRowComparator.FILTERED_OUT, new Usage("filtered out"), null, 0, null));
+    rows.add(new Row(UsageRowComparator.OUTSIDE_SCOPE, new Usage("outside of scope"), null, 0, null));
+    return new ArrayList<>(rows.subList(Math.max(0, rows.size() - size), rows.size()));
+  }
+
+  /**
+   * Usage presentation, not comparable like the usage adapters.
+   */
+  private static final class Usage {
+    private final String text;
+
+    private Usage(@NotNull String text) {
+      this.text = text;
+    }
+
+    @Override
+    public String toString() {
+      return text;
+    }
+  }
+}
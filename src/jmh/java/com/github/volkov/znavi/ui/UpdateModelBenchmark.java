@@ -0,0 +1,74 @@
+package com.github.volkov.znavi.ui;
+
+import com.intellij.ide.util.gotoByName.ModelDiff;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link UsageRows#updateModel} of a list model between two rebuilds of the popup, the second one with
+ * {@code 1 / NEW_ROW_EACH} rows more, the usages found since the first one. Invocations alternate the direction,
+ * so the model needs no reset. Sizes too big for {@link ModelDiff} are skipped by it and measure the bail out.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UpdateModelBenchmark {
+  private static final int NEW_ROW_EACH = 100;
+
+  @Param({"100", "10000", "1000000"})
+  public int size;
+
+  private List<Object> before;
+  private List<Object> after;
+  private ListModel model;
+  private boolean forward;
+
+  @Setup
+  public void setup() {
+    after = new ArrayList<>(SyntheticRows.generate(size, 42));
+    after.sort((o1, o2) -> SyntheticRows.COMPARATOR.compare((SyntheticRows.Row)o1, (SyntheticRows.Row)o2));
+    before = new ArrayList<>(after.size());
+    for (int i = 0; i < after.size(); i++) {
+      if (i % NEW_ROW_EACH != NEW_ROW_EACH - 1) before.add(after.get(i));
+    }
+    model = new ListModel(before);
+    forward = true;
+  }
+
+  @Benchmark
+  public int updateModel() {
+    int selection = forward ? UsageRows.updateModel(model, before, after, 0) : UsageRows.updateModel(model, after, before, 0);
+    forward = !forward;
+    return selection;
+  }
+
+  /**
+   * Model adding and removing rows one by one like {@code ShowUsagesTable.MyModel}.
+   */
+  private static final class ListModel implements ModelDiff.Model<Object> {
+    private final List<Object> items;
+
+    private ListModel(List<Object> items) {
+      this.items = new ArrayList<>(items);
+    }
+
+    @Override
+    public void addToModel(int idx, Object element) {
+      if (idx < items.size()) {
+        items.add(idx, element);
+      }
+      else {
+        items.add(element);
+      }
+    }
+
+    @Override
+    public void removeRangeFromModel(int start, int end) {
+      for (int i = end; i >= start; i--) {
+        items.remove(i);
+      }
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package com.github.volkov.znavi.ui;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting of the popup rows by {@link UsageRowComparator}, as {@code UsageNodeComparator} does on every rebuild.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UsageRowComparatorBenchmark {
+  @Param({"100", "10000", "1000000"})
+  public int size;
+
+  private List<SyntheticRows.Row> rows;
+
+  @Setup
+  public void setup() {
+    rows = SyntheticRows.generate(size, 42);
+  }
+
+  @Benchmark
+  public List<SyntheticRows.Row> sort() {
+    List<SyntheticRows.Row> copy = new ArrayList<>(rows);
+    copy.sort(SyntheticRows.COMPARATOR);
+    return copy;
+  }
+}
@@ -0,0 +1,60 @@
+package com.github.volkov.znavi.ui;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ordering of the found usages by their group path when the search completes: the former
+ * {@code getUsageString}/{@code nodeToString} comparator building the key on every comparison
+ * against {@link UsageRows#sortByKey} building it once per usage.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UsageSortKeyBenchmark {
+  @Param({"100", "10000", "1000000"})
+  public int size;
+
+  private List<SyntheticRows.Row> rows;
+
+  @Setup
+  public void setup() {
+    rows = SyntheticRows.generate(size, 42);
+  }
+
+  @Benchmark
+  public List<SyntheticRows.Row> recomputedKeys() {
+    List<SyntheticRows.Row> copy = new ArrayList<>(rows);
+    copy.sort(Comparator.comparing(row -> nodeToString(row.parent) + "|" + row.usage));
+    return copy;
+  }
+
+  @Benchmark
+  public List<SyntheticRows.Row> sortByKey() {
+    List<SyntheticRows.Row> copy = new ArrayList<>(rows);
+    UsageRows.sortByKey(copy, UsageSortKeyBenchmark::groupPathKey);
+    return copy;
+  }
+
+  private static @NotNull String nodeToString(@Nullable SyntheticRows.Node node) {
+    if (node == null || node.group == null) {
+      return "";
+    }
+    return nodeToString(node.parent) + "|" + node.group;
+  }
+
+  private static @NotNull String groupPathKey(@NotNull SyntheticRows.Row row) {
+    List<String> groups = new ArrayList<>();
+    for (SyntheticRows.Node node = row.parent; node != null && node.group != null; node = node.parent) {
+      groups.add(node.group);
+    }
+    Collections.reverse(groups);
+    return UsageRows.groupPathKey(groups, row.usage.toString());
+  }
+}
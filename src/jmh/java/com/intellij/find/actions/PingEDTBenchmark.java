@@ -0,0 +1,49 @@
+package com.intellij.find.actions;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PingEDT} scheduling: a search thread pings once per found usage, the rebuilds coalesce in the EDT.
+ * An invocation pings {@code size} times and waits until the EDT has seen the last ping.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PingEDTBenchmark {
+  @Param({"100", "10000", "1000000"})
+  public int size;
+
+  private volatile int produced;
+  private volatile int consumed;
+  private volatile int rebuilds;
+  private PingEDT pingEDT;
+
+  @Setup
+  public void setup() {
+    pingEDT = new PingEDT("Benchmark", () -> false, 100, () -> {
+      consumed = produced;
+      rebuilds++;
+    });
+  }
+
+  @TearDown
+  public void tearDown() {
+    pingEDT.stop();
+  }
+
+  @Benchmark
+  public int ping() {
+    produced = 0;
+    consumed = -1;
+    rebuilds = 0;
+    for (int i = 1; i <= size; i++) {
+      produced = i;
+      pingEDT.ping();
+    }
+    while (consumed != size) {
+      Thread.onSpinWait();
+    }
+    return rebuilds;
+  }
+}
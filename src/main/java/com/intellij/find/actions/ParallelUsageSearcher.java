@@ -0,0 +1,178 @@
+package com.intellij.find.actions;
+
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.GlobalSearchScopesCore;
+import com.intellij.psi.search.ProjectScope;
+import com.intellij.psi.search.SearchScope;
+import com.intellij.usages.Usage;
+import com.intellij.usages.UsageSearcher;
+import com.intellij.util.Processor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Splits the selected {@link GlobalSearchScope} into per-module (per-content-root for modules with several roots) partitions
+ * plus one partition for everything outside of the project content, and searches them on a bounded fork/join pool.
+ * All partitions feed the same processor, so the caller's accumulator has to be thread-safe.
+ * <p>
+ * Parallelism is controlled by the {@code znavi.search.parallelism} registry key, {@code 1} or less means serial search.
+ */
+final class ParallelUsageSearcher implements UsageSearcher {
+  private static final Logger LOG = Logger.getInstance(ParallelUsageSearcher.class);
+  private static final String PARALLELISM_KEY = "znavi.search.parallelism";
+
+  private static ForkJoinPool ourPool;
+
+  private final ShowUsagesActionHandler myActionHandler;
+  private final List<GlobalSearchScope> myPartitions;
+  private final int myParallelism;
+
+  private ParallelUsageSearcher(@NotNull ShowUsagesActionHandler actionHandler, @NotNull List<GlobalSearchScope> partitions, int parallelism) {
+    myActionHandler = actionHandler;
+    myPartitions = partitions;
+    myParallelism = parallelism;
+  }
+
+  /**
+   * Returns parallel searcher for the handler's scope, or the handler's own (serial) searcher
+   * if parallel search is disabled or the scope can't be partitioned.
+   */
+  static @NotNull UsageSearcher create(@NotNull Project project, @NotNull ShowUsagesActionHandler actionHandler) {
+    int parallelism = getParallelism();
+    SearchScope scope = actionHandler.getSelectedScope();
+    if (parallelism <= 1 || !(scope instanceof GlobalSearchScope)) {
+      return actionHandler.createUsageSearcher();
+    }
+    List<GlobalSearchScope> partitions = ReadAction.compute(() -> partition(project, (GlobalSearchScope)scope));
+    if (partitions.size() <= 1) {
+      return actionHandler.createUsageSearcher();
+    }
+    return new ParallelUsageSearcher(actionHandler, partitions, parallelism);
+  }
+
+  static int getParallelism() {
+    int value = Registry.intValue(PARALLELISM_KEY, 0);
+    return value <= 0 ? Math.max(1, Runtime.getRuntime().availableProcessors() - 1) : value;
+  }
+
+  @NotNull
+  private static List<GlobalSearchScope> partition(@NotNull Project project, @NotNull GlobalSearchScope scope) {
+    List<GlobalSearchScope> result = new ArrayList<>();
+    for (Module module : ModuleManager.getInstance(project).getModules()) {
+      if (!scope.isSearchInModuleContent(module)) continue;
+      GlobalSearchScope moduleScope = GlobalSearchScope.moduleScope(module);
+      VirtualFile[] roots = ModuleRootManager.getInstance(module).getContentRoots();
+      if (roots.length <= 1) {
+        result.add(scope.intersectWith(moduleScope));
+      }
+      else {
+        for (VirtualFile root : roots) {
+          result.add(scope.intersectWith(moduleScope.intersectWith(GlobalSearchScopesCore.directoryScope(project, root, true))));
+        }
+      }
+    }
+    if (scope.isSearchInLibraries()) {
+      result.add(scope.intersectWith(GlobalSearchScope.notScope(ProjectScope.getContentScope(project))));
+    }
+    return result;
+  }
+
+  @Override
+  public void generate(@NotNull Processor<? super Usage> processor) {
+    ProgressIndicator indicator = ProgressManager.getGlobalProgressIndicator();
+    ProgressIndicator parent = indicator == null ? new ProgressIndicatorBase() : indicator;
+    AtomicBoolean stopped = new AtomicBoolean();
+    Processor<Usage> stoppable = usage -> {
+      if (stopped.get()) return false;
+      if (!processor.process(usage)) {
+        stopped.set(true);
+        return false;
+      }
+      return true;
+    };
+    try {
+      getPool(myParallelism).invoke(new PartitionTask(myPartitions, parent, stoppable, stopped));
+    }
+    catch (ProcessCanceledException e) {
+      throw e;
+    }
+    catch (RuntimeException e) {
+      if (parent.isCanceled()) throw new ProcessCanceledException();
+      throw e;
+    }
+  }
+
+  private static synchronized @NotNull ForkJoinPool getPool(int parallelism) {
+    if (ourPool == null || ourPool.getParallelism() != parallelism) {
+      if (ourPool != null) {
+        ourPool.shutdown();
+      }
+      ourPool = new ForkJoinPool(parallelism, pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("ZNavi usage search " + thread.getPoolIndex());
+        return thread;
+      }, null, false);
+    }
+    return ourPool;
+  }
+
+  private final class PartitionTask extends RecursiveAction {
+    private final List<GlobalSearchScope> myScopes;
+    private final ProgressIndicator myParent;
+    private final Processor<Usage> myProcessor;
+    private final AtomicBoolean myStopped;
+
+    private PartitionTask(@NotNull List<GlobalSearchScope> scopes,
+                          @NotNull ProgressIndicator parent,
+                          @NotNull Processor<Usage> processor,
+                          @NotNull AtomicBoolean stopped) {
+      myScopes = scopes;
+      myParent = parent;
+      myProcessor = processor;
+      myStopped = stopped;
+    }
+
+    @Override
+    protected void compute() {
+      if (myStopped.get() || myParent.isCanceled()) return;
+      if (myScopes.size() > 1) {
+        int middle = myScopes.size() / 2;
+        invokeAll(new PartitionTask(myScopes.subList(0, middle), myParent, myProcessor, myStopped),
+                  new PartitionTask(myScopes.subList(middle, myScopes.size()), myParent, myProcessor, myStopped));
+        return;
+      }
+      GlobalSearchScope scope = myScopes.get(0);
+      UsageSearcher searcher = myActionHandler.withScope(scope).createUsageSearcher();
+      try {
+        ProgressManager.getInstance().runProcess(() -> searcher.generate(myProcessor), new SensitiveProgressWrapper(myParent));
+      }
+      catch (ProcessCanceledException e) {
+        // the consumer has enough usages, other cancellations (the parent or a write action through the wrapper)
+        // leave the partition incomplete and must cancel the whole search instead of dropping its usages
+        if (!myStopped.get()) {
+          LOG.debug("Partition search canceled: " + scope.getDisplayName());
+          throw e;
+        }
+      }
+    }
+  }
+}
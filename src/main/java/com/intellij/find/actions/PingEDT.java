@@ -15,6 +15,9 @@
  */
 package com.intellij.find.actions;
 
+import com.github.volkov.znavi.diagnostics.EdtWatchdog;
+import com.github.volkov.znavi.diagnostics.RebuildSliceEvent;
+import com.intellij.openapi.application.ApplicationManager;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 
@@ -29,7 +32,6 @@ import java.util.function.BooleanSupplier;
  * If activity took more than {@code maxUnitOfWorkThresholdMs} ms, it will yield till the next invokeLater.
  */
 class PingEDT {
-  @SuppressWarnings({"FieldCanBeLocal", "UnusedDeclaration"})
   private final String myName;
   private final Runnable pingAction;
   private volatile boolean stopped;
@@ -47,20 +49,34 @@ class PingEDT {
         stop();
         return;
       }
+      RebuildSliceEvent event = new RebuildSliceEvent();
+      event.begin();
+      // there is no application in the JMH benchmarks
+      EdtWatchdog watchdog = ApplicationManager.getApplication() == null ? null : EdtWatchdog.getInstance();
+      if (watchdog != null) watchdog.enter(myName);
       long start = System.currentTimeMillis();
       int processed = 0;
-      while (true) {
-        if (processNext()) {
-          processed++;
+      try {
+        while (true) {
+          if (processNext()) {
+            processed++;
+          }
+          else {
+            break;
+          }
+          long finish = System.currentTimeMillis();
+          if (myMaxUnitOfWorkThresholdMs != -1 && finish - start > myMaxUnitOfWorkThresholdMs) break;
         }
-        else {
-          break;
-        }
-        long finish = System.currentTimeMillis();
-        if (myMaxUnitOfWorkThresholdMs != -1 && finish - start > myMaxUnitOfWorkThresholdMs) break;
       }
-      if (!isEmpty()) {
-        scheduleUpdate();
+      finally {
+        if (watchdog != null) watchdog.exit();
+      }
+      boolean rescheduled = !isEmpty() && scheduleUpdate();
+      if (event.shouldCommit()) {
+        event.name = myName;
+        event.processed = processed;
+        event.rescheduled = rescheduled;
+        event.commit();
       }
     }
   };
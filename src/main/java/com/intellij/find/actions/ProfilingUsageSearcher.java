@@ -0,0 +1,149 @@
+package com.intellij.find.actions;
+
+import com.intellij.ide.plugins.PluginManagerCore;
+import com.intellij.notification.NotificationGroupManager;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.extensions.PluginId;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.usages.Usage;
+import com.intellij.usages.UsageSearcher;
+import com.intellij.usages.rules.UsageInFile;
+import com.intellij.util.Processor;
+import com.intellij.util.QueryExecutor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Diagnostic wrapper of a {@link UsageSearcher} attributing the search time to query executors and files,
+ * enabled by the {@code znavi.search.profile} registry key.
+ * <p>
+ * The time a searching thread spends between two usages is attributed to the second usage: to its file and to the
+ * outermost {@link QueryExecutor} on the stack when it is reported (usages found by the deferred word index requests
+ * of {@code PsiSearchHelper} have none). Time spent by the consumer appending usages to the view is counted separately.
+ * The searcher only sees the usages, not the files being scanned, so the time of a file also includes the files
+ * without usages scanned before it by the same thread; the report says so next to the files.
+ * After the search the slowest contributors are logged and shown in a notification.
+ */
+final class ProfilingUsageSearcher implements UsageSearcher {
+  private static final Logger LOG = Logger.getInstance(ProfilingUsageSearcher.class);
+  private static final String PROFILE_KEY = "znavi.search.profile";
+  private static final int TOP = 10;
+  private static final String WORD_INDEX = "word index requests";
+  private static final String CONSUMER = "usage view append";
+  private static final String AFTER_LAST_USAGE = "after the last usage";
+  private static final String FILES = "Files (time since the previous usage of the thread, includes files without usages scanned in between)";
+  private static final StackWalker WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+  private static final class Contribution {
+    final AtomicLong nanos = new AtomicLong();
+    final AtomicInteger usages = new AtomicInteger();
+  }
+
+  private final UsageSearcher myDelegate;
+  private final Project myProject;
+  private final String myTitle;
+  private final Map<String, Contribution> myExecutors = new ConcurrentHashMap<>();
+  private final Map<VirtualFile, Contribution> myFiles = new ConcurrentHashMap<>();
+  private final ThreadLocal<long[]> myLastUsage = ThreadLocal.withInitial(() -> new long[1]);
+  private final AtomicLong myLastOfAll = new AtomicLong();
+
+  private ProfilingUsageSearcher(@NotNull UsageSearcher delegate, @NotNull Project project, @NotNull String title) {
+    myDelegate = delegate;
+    myProject = project;
+    myTitle = title;
+  }
+
+  /**
+   * Returns profiling wrapper of {@code searcher} if profiling is enabled, otherwise the searcher itself.
+   */
+  static @NotNull UsageSearcher wrap(@NotNull UsageSearcher searcher, @NotNull Project project, @NotNull String title) {
+    return Registry.is(PROFILE_KEY) ? new ProfilingUsageSearcher(searcher, project, title) : searcher;
+  }
+
+  @Override
+  public void generate(@NotNull Processor<? super Usage> processor) {
+    long start = System.nanoTime();
+    try {
+      myDelegate.generate(usage -> {
+        long[] last = myLastUsage.get();
+        long found = System.nanoTime();
+        long gap = found - (last[0] == 0 ? start : last[0]);
+        add(myExecutors, executor(), gap, 1);
+        VirtualFile file = usage instanceof UsageInFile ? ((UsageInFile)usage).getFile() : null;
+        if (file != null) {
+          add(myFiles, file, gap, 1);
+        }
+        boolean result = processor.process(usage);
+        last[0] = System.nanoTime();
+        myLastOfAll.accumulateAndGet(last[0], Math::max);
+        add(myExecutors, CONSUMER, last[0] - found, 0);
+        return result;
+      });
+    }
+    finally {
+      long last = myLastOfAll.get();
+      add(myExecutors, AFTER_LAST_USAGE, System.nanoTime() - (last == 0 ? start : last), 0);
+      report(System.nanoTime() - start);
+    }
+  }
+
+  private static <K> void add(@NotNull Map<K, Contribution> contributions, @NotNull K key, long nanos, int usages) {
+    Contribution contribution = contributions.computeIfAbsent(key, k -> new Contribution());
+    contribution.nanos.addAndGet(nanos);
+    contribution.usages.addAndGet(usages);
+  }
+
+  private static @NotNull String executor() {
+    Class<?> executor = WALKER.walk(frames -> frames
+      .map(StackWalker.StackFrame::getDeclaringClass)
+      .filter(QueryExecutor.class::isAssignableFrom)
+      .reduce((inner, outer) -> outer)
+      .orElse(null));
+    if (executor == null) return WORD_INDEX;
+    PluginId plugin = PluginManagerCore.getPluginByClassName(executor.getName());
+    return executor.getSimpleName() + (plugin == null ? "" : " [" + plugin.getIdString() + "]");
+  }
+
+  private void report(long totalNanos) {
+    String executors = top(myExecutors, key -> key);
+    String files = top(myFiles, VirtualFile::getPresentableUrl);
+    LOG.info("Search profile of " + myTitle + ", total " + millis(totalNanos) + "ms\nExecutors:\n" + executors + "\n" + FILES + ":\n" + files);
+    String content = "Total " + millis(totalNanos) + " ms<br/><b>Executors</b><br/>" + StringUtil.escapeXmlEntities(executors).replace("\n", "<br/>") +
+                     "<br/><b>" + StringUtil.escapeXmlEntities(FILES) + "</b><br/>" + StringUtil.escapeXmlEntities(files).replace("\n", "<br/>");
+    NotificationGroupManager.getInstance().getNotificationGroup("ZNavi")
+      .createNotification("Search profile: " + myTitle, content, NotificationType.INFORMATION, null)
+      .notify(myProject);
+  }
+
+  private static <K> @NotNull String top(@NotNull Map<K, Contribution> contributions, @NotNull Function<K, String> name) {
+    List<Map.Entry<K, Contribution>> entries = contributions.entrySet().stream()
+      .sorted(Comparator.comparingLong((Map.Entry<K, Contribution> e) -> e.getValue().nanos.get()).reversed())
+      .limit(TOP)
+      .collect(Collectors.toList());
+    return entries.stream()
+      .map(e -> millis(e.getValue().nanos.get()) + " ms, " + usages(e.getValue()) + name.apply(e.getKey()))
+      .collect(Collectors.joining("\n"));
+  }
+
+  private static @NotNull String usages(@NotNull Contribution contribution) {
+    int count = contribution.usages.get();
+    return count == 0 ? "" : count + " usages, ";
+  }
+
+  private static long millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+}
@@ -15,13 +15,40 @@ import java.util.List;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 
+import com.github.volkov.znavi.diagnostics.EdtWatchdog;
+import com.github.volkov.znavi.diagnostics.FirstUsageEvent;
+import com.github.volkov.znavi.diagnostics.LatencyMeasurement;
+import com.github.volkov.znavi.diagnostics.NavigateEvent;
+import com.github.volkov.znavi.diagnostics.NavigationKind;
+import com.github.volkov.znavi.diagnostics.NavigationStats;
+import com.github.volkov.znavi.diagnostics.SearchEvent;
+import com.github.volkov.znavi.diagnostics.SearcherStartEvent;
+import com.github.volkov.znavi.diagnostics.SessionRecorder;
+import com.github.volkov.znavi.diagnostics.SortEvent;
+import com.github.volkov.znavi.diagnostics.TargetResolutionEvent;
+import com.github.volkov.znavi.diagnostics.TraceLevel;
+import com.github.volkov.znavi.diagnostics.TracePhase;
+import com.github.volkov.znavi.diagnostics.UsageBatchEvent;
+import com.github.volkov.znavi.diagnostics.ZNaviTrace;
+import com.github.volkov.znavi.search.BatchReferenceSearch;
+import com.github.volkov.znavi.search.FastReferenceEngine;
+import com.github.volkov.znavi.search.MergedTargetsSearch;
+import com.github.volkov.znavi.search.SearchPlan;
+import com.github.volkov.znavi.search.SearchPlanner;
+import com.github.volkov.znavi.search.SearchStrategy;
+import com.github.volkov.znavi.search.UsageOffset;
+import com.github.volkov.znavi.search.UsageOffsetNavigator;
+import com.github.volkov.znavi.ui.UsageRowComparator;
+import com.github.volkov.znavi.ui.UsageRows;
 import com.intellij.codeInsight.TargetElementUtil;
 import com.intellij.codeInsight.hint.HintManager;
 import com.intellij.codeInsight.hint.HintManagerImpl;
 import com.intellij.codeInsight.hint.HintUtil;
+import com.intellij.codeInsight.navigation.actions.GotoDeclarationAction;
 import com.intellij.featureStatistics.FeatureUsageTracker;
 import com.intellij.find.FindBundle;
 import com.intellij.find.FindManager;
@@ -32,20 +59,22 @@ import com.intellij.find.usages.api.SearchTarget;
 import com.intellij.icons.AllIcons;
 import com.intellij.ide.DataManager;
 import com.intellij.ide.IdeBundle;
-import com.intellij.ide.util.gotoByName.ModelDiff;
 import com.intellij.internal.statistic.service.fus.collectors.UIEventLogger;
 import com.intellij.openapi.actionSystem.*;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileEditor;
 import com.intellij.openapi.fileEditor.FileEditorLocation;
 import com.intellij.openapi.fileEditor.TextEditor;
 import com.intellij.openapi.fileEditor.impl.text.AsyncEditorLoader;
 import com.intellij.openapi.keymap.KeymapUtil;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.progress.util.ProgressIndicatorBase;
 import com.intellij.openapi.project.DumbAwareAction;
 import com.intellij.openapi.project.Project;
@@ -67,8 +96,10 @@ import com.intellij.openapi.wm.ToolWindowId;
 import com.intellij.openapi.wm.ToolWindowManager;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiReference;
 import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.LocalSearchScope;
 import com.intellij.psi.search.SearchScope;
 import com.intellij.ui.*;
 import com.intellij.ui.awt.RelativePoint;
@@ -84,6 +115,7 @@ import com.intellij.util.ArrayUtil;
 import com.intellij.util.BitUtil;
 import com.intellij.util.Processor;
 import com.intellij.util.SmartList;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.concurrency.EdtScheduledExecutorService;
 import com.intellij.util.messages.MessageBusConnection;
 import com.intellij.util.ui.AsyncProcessIcon;
@@ -96,6 +128,7 @@ import static org.jetbrains.annotations.Nls.Capitalization.Sentence;
 
 public class ShowUsagesActionClone extends AnAction implements PopupAction, HintManagerImpl.ActionToIgnore {
   public static final String ID = "ShowUsages";
+  private static final int USAGE_BATCH_SIZE = 100;
   private final int direction;
 
   public ShowUsagesActionClone(int direction) {
@@ -103,7 +136,7 @@ public class ShowUsagesActionClone extends AnAction implements PopupAction, Hint
     setInjectedContext(true);
   }
 
-  private static final class UsageNodeComparator implements Comparator<UsageNode> {
+  private static final class UsageNodeComparator extends UsageRowComparator<UsageNode, VirtualFile> {
     private final ShowUsagesTable myTable;
 
     private UsageNodeComparator(@NotNull ShowUsagesTable table) {
@@ -118,34 +151,42 @@ public class ShowUsagesActionClone extends AnAction implements PopupAction, Hint
         }
         return c1 instanceof StringNode ? 1 : -1;
       }
+      return super.compare(c1, c2);
+    }
 
-      Usage o1 = c1.getUsage();
-      Usage o2 = c2.getUsage();
-      int weight1 = o1 == myTable.USAGES_FILTERED_OUT_SEPARATOR ? 3 : o1 == myTable.USAGES_OUTSIDE_SCOPE_SEPARATOR ? 2 : o1 == myTable.MORE_USAGES_SEPARATOR ? 1 : 0;
-      int weight2 = o2 == myTable.USAGES_FILTERED_OUT_SEPARATOR ? 3 : o2 == myTable.USAGES_OUTSIDE_SCOPE_SEPARATOR ? 2 : o2 == myTable.MORE_USAGES_SEPARATOR ? 1 : 0;
-      if (weight1 != weight2) return weight1 - weight2;
+    @Override
+    protected int weight(UsageNode node) {
+      Usage usage = node.getUsage();
+      return usage == myTable.USAGES_FILTERED_OUT_SEPARATOR ? FILTERED_OUT
+           : usage == myTable.USAGES_OUTSIDE_SCOPE_SEPARATOR ? OUTSIDE_SCOPE
+           : usage == myTable.MORE_USAGES_SEPARATOR ? MORE_USAGES : USAGE;
+    }
 
-      if (o1 instanceof Comparable && o2 instanceof Comparable) {
-        //noinspection unchecked,rawtypes
-        return ((Comparable)o1).compareTo(o2);
-      }
+    @Override
+    protected Object usage(UsageNode node) {
+      return node.getUsage();
+    }
 
-      VirtualFile v1 = UsageListCellRenderer.getVirtualFile(o1);
-      VirtualFile v2 = UsageListCellRenderer.getVirtualFile(o2);
-      String name1 = v1 == null ? null : v1.getName();
-      String name2 = v2 == null ? null : v2.getName();
-      int i = Comparing.compare(name1, name2);
-      if (i != 0) return i;
-      if (Comparing.equal(v1, v2)) {
-        FileEditorLocation loc1 = o1.getLocation();
-        FileEditorLocation loc2 = o2.getLocation();
-        return Comparing.compare(loc1, loc2);
-      }
-      else {
-        String path1 = v1 == null ? null : v1.getPath();
-        String path2 = v2 == null ? null : v2.getPath();
-        return Comparing.compare(path1, path2);
-      }
+    @Override
+    protected @Nullable VirtualFile file(UsageNode node) {
+      return UsageListCellRenderer.getVirtualFile(node.getUsage());
+    }
+
+    @Override
+    protected @NotNull String fileName(@NotNull VirtualFile file) {
+      return file.getName();
+    }
+
+    @Override
+    protected @NotNull String path(@NotNull VirtualFile file) {
+      return file.getPath();
+    }
+
+    @Override
+    protected int compareInFile(UsageNode c1, UsageNode c2) {
+      FileEditorLocation loc1 = c1.getUsage().getLocation();
+      FileEditorLocation loc2 = c2.getUsage().getLocation();
+      return Comparing.compare(loc1, loc2);
     }
   }
 
@@ -186,7 +227,9 @@ public class ShowUsagesActionClone extends AnAction implements PopupAction, Hint
       showSymbolUsages(project, e.getDataContext(), direction);
     }
     else {
-      System.out.println("###Running psi usages");
+      if (ZNaviTrace.isEnabled(TraceLevel.INFO)) {
+        ZNaviTrace.log(TraceLevel.INFO, TracePhase.RESOLVE, "psi usages, direction " + direction);
+      }
       showPsiUsages(project, e, popupPosition, direction);
     }
   }
@@ -251,10 +294,11 @@ public class ShowUsagesActionClone extends AnAction implements PopupAction, Hint
     UsageTarget[] usageTargets = e.getData(UsageView.USAGE_TARGETS_KEY);
     Editor editor = e.getData(CommonDataKeys.EDITOR);
     if (usageTargets == null) {
-      FindUsagesAction.chooseAmbiguousTargetAndPerform(project, editor, element -> {
-        startFindUsages(element, popupPosition, editor, direction);
-        return false;
-      });
+      if (editor != null && Registry.is("znavi.ambiguous.merge")) {
+        findAmbiguousTargets(project, editor, popupPosition, direction);
+        return;
+      }
+      chooseTargetAndFindUsages(project, editor, popupPosition, direction);
     }
     else if (ArrayUtil.getFirstElement(usageTargets) instanceof PsiElementUsageTarget) {
       PsiElement element = ((PsiElementUsageTarget)usageTargets[0]).getElement();
@@ -264,19 +308,220 @@ public class ShowUsagesActionClone extends AnAction implements PopupAction, Hint
     }
   }
 
+  private static void chooseTargetAndFindUsages(@NotNull Project project, @Nullable Editor editor, @NotNull RelativePoint popupPosition,
+                                                int direction) {
+    FindUsagesAction.chooseAmbiguousTargetAndPerform(project, editor, element -> {
+      startFindUsages(element, popupPosition, editor, direction);
+      return false;
+    });
+  }
+
+  /**
+   * Resolves all targets at the caret in background, searches usages of all of them by {@link MergedTargetsSearch}
+   * if there are several, otherwise continues as usual.
+   */
+  private static void findAmbiguousTargets(@NotNull Project project, @NotNull Editor editor, @NotNull RelativePoint popupPosition,
+                                           int direction) {
+    int offset = editor.getCaretModel().getOffset();
+    new Task.Backgroundable(project, UsageViewBundle.message("progress.searching"), true) {
+      private PsiElement[] myCandidates = PsiElement.EMPTY_ARRAY;
+
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        // restarted instead of blocking write actions, cancelled if the editor is closed
+        myCandidates = ReadAction.nonBlocking(() -> GotoDeclarationAction.findAllTargetElements(project, editor, offset))
+          .expireWhen(() -> editor.isDisposed())
+          .executeSynchronously();
+      }
+
+      @Override
+      public void onSuccess() {
+        if (editor.isDisposed()) return;
+        if (myCandidates.length > 1) {
+          startMergedFindUsages(project, Arrays.asList(myCandidates), popupPosition, editor, direction);
+        }
+        else {
+          chooseTargetAndFindUsages(project, editor, popupPosition, direction);
+        }
+      }
+    }.queue();
+  }
+
+  /**
+   * Searches usages of all {@code candidates} at once with the options and the scope of their find usages handlers,
+   * the same way {@link #startFindUsages} does for a single target.
+   */
+  private static void startMergedFindUsages(@NotNull Project project, @NotNull List<PsiElement> candidates,
+                                            @NotNull RelativePoint popupPosition, @NotNull Editor editor, int direction) {
+    NavigationKind kind = NavigationKind.forDirection(direction);
+    LatencyMeasurement latency = kind == null ? null : NavigationStats.getInstance().start(kind);
+    FindUsagesManager findUsagesManager = ((FindManagerImpl)FindManager.getInstance(project)).getFindUsagesManager();
+    List<PsiElement> targets = new ArrayList<>();
+    SearchScope searchScope = null;
+    for (PsiElement candidate : candidates) {
+      FindUsagesHandlerBase handler = findUsagesManager.getFindUsagesHandler(candidate, USAGES_WITH_DEFAULT_OPTIONS);
+      if (handler == null) continue;
+      //noinspection deprecation
+      FindUsagesOptions options = handler.getFindUsagesOptions(DataManager.getInstance().getDataContext());
+      searchScope = searchScope == null ? options.searchScope : searchScope.union(options.searchScope);
+      Collections.addAll(targets, handler.getPrimaryElements());
+    }
+    if (targets.isEmpty()) {
+      if (latency != null) latency.abandon();
+      chooseTargetAndFindUsages(project, editor, popupPosition, direction);
+      return;
+    }
+    if (latency != null) {
+      latency.setContext(SessionRecorder.getInstance().context(targets.get(0), editor, searchScope));
+    }
+    VirtualFile currentFile = FileDocumentManager.getInstance().getFile(editor.getDocument());
+    SearchScope scope = searchScope;
+    planAndThen(project, editor, targets.get(0), scope, currentFile, direction, latency,
+                plan -> MergedTargetsSearch.start(project, editor, popupPosition, targets, scope, direction, plan, latency));
+  }
+
+  /**
+   * Plans the search in a background read action, the planner queries the word index, and continues with the plan in EDT.
+   */
+  private static void planAndThen(@NotNull Project project, @Nullable Editor editor, @NotNull PsiElement target,
+                                  @NotNull SearchScope searchScope, @Nullable VirtualFile currentFile, int direction,
+                                  @Nullable LatencyMeasurement latency, @NotNull Consumer<? super SearchPlan> continuation) {
+    ReadAction.nonBlocking(() -> SearchPlanner.getInstance().plan(target, searchScope, currentFile, direction))
+      .expireWith(project)
+      .expireWhen(() -> !target.isValid() || editor != null && editor.isDisposed())
+      .finishOnUiThread(ModalityState.defaultModalityState(), continuation)
+      .submit(AppExecutorUtil.getAppExecutorService())
+      .onError(e -> {
+        if (latency != null) latency.abandon();
+      });
+  }
+
   private static void hideHints() {
     HintManager.getInstance().hideHints(HintManager.HIDE_BY_ANY_KEY, false, false);
   }
 
   public static void startFindUsages(@NotNull PsiElement element, @NotNull RelativePoint popupPosition, @Nullable Editor editor,
                                      int direction) {
+    TargetResolutionEvent resolutionEvent = new TargetResolutionEvent();
+    resolutionEvent.begin();
+    NavigationKind kind = NavigationKind.forDirection(direction);
+    LatencyMeasurement latency = kind == null ? null : NavigationStats.getInstance().start(kind);
     Project project = element.getProject();
     FindUsagesManager findUsagesManager = ((FindManagerImpl)FindManager.getInstance(project)).getFindUsagesManager();
     FindUsagesHandlerBase handler = findUsagesManager.getFindUsagesHandler(element, USAGES_WITH_DEFAULT_OPTIONS);
-    if (handler == null) return;
+    if (handler == null) {
+      if (latency != null) latency.abandon();
+      return;
+    }
     //noinspection deprecation
     FindUsagesOptions options = handler.getFindUsagesOptions(DataManager.getInstance().getDataContext());
-    showElementUsages(ShowUsagesParameters.initial(project, editor, popupPosition), createActionHandler(handler, options), direction);
+    if (latency != null) {
+      latency.setContext(SessionRecorder.getInstance().context(element, editor, options.searchScope));
+    }
+    ShowUsagesParameters parameters = ShowUsagesParameters.initial(project, editor, popupPosition, latency);
+    ShowUsagesActionHandler actionHandler = createActionHandler(handler, options);
+    VirtualFile currentFile = editor == null ? null : FileDocumentManager.getInstance().getFile(editor.getDocument());
+    planAndThen(project, editor, element, options.searchScope, currentFile, direction, latency, plan -> {
+      if (ZNaviTrace.isEnabled(TraceLevel.INFO)) {
+        ZNaviTrace.log(TraceLevel.INFO, TracePhase.RESOLVE, element.getClass().getSimpleName() + " " + plan);
+      }
+      if (resolutionEvent.shouldCommit()) {
+        resolutionEvent.targetKind = element.getClass().getSimpleName();
+        resolutionEvent.strategy = plan.getStrategy().name();
+        resolutionEvent.direction = direction;
+        resolutionEvent.commit();
+      }
+      if (direction != 0 && editor != null && plan.getStrategy() == SearchStrategy.FILE_LOCAL_FIRST) {
+        navigateFileLocalFirst(element, parameters, actionHandler, direction, plan);
+        return;
+      }
+      if (direction != 0 && Registry.is("znavi.fast.references") && FastReferenceEngine.isApplicable(element)) {
+        navigateWithFastEngine(element, parameters, actionHandler, direction, plan);
+        return;
+      }
+      ShowUsagesParameters firstPage = plan.getStrategy() == SearchStrategy.PAGED ? parameters.firstPage(SearchPlan.PAGE_SIZE) : parameters;
+      showElementUsages(firstPage, actionHandler, direction, plan);
+    });
+  }
+
+  /**
+   * Navigates to the next usage in the current file if there is one in the given direction,
+   * otherwise continues with the search in the whole scope.
+   */
+  private static void navigateFileLocalFirst(@NotNull PsiElement element,
+                                             @NotNull ShowUsagesParameters parameters,
+                                             @NotNull ShowUsagesActionHandler actionHandler,
+                                             int direction,
+                                             @NotNull SearchPlan plan) {
+    Editor editor = Objects.requireNonNull(parameters.editor);
+    PsiFile psiFile = PsiDocumentManager.getInstance(parameters.project).getPsiFile(editor.getDocument());
+    if (psiFile == null) {
+      showElementUsages(parameters, actionHandler, direction, plan);
+      return;
+    }
+    long start = System.currentTimeMillis();
+    new Task.Backgroundable(parameters.project, UsageViewBundle.message("progress.searching"), true) {
+      private final List<UsageOffset> myUsages = new ArrayList<>();
+
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        new BatchReferenceSearch(parameters.project, new LocalSearchScope(psiFile)).add(element, myUsages::add).run(indicator);
+        myUsages.sort(UsageOffset.ORDER);
+      }
+
+      @Override
+      public void onSuccess() {
+        int selfIndex = UsageOffsetNavigator.indexOfCaret(editor, myUsages);
+        int navigateIndex = selfIndex + direction;
+        if (selfIndex != -1 && navigateIndex >= 0 && navigateIndex < myUsages.size()) {
+          SearchPlanner.getInstance().record(plan, System.currentTimeMillis() - start, myUsages.size());
+          String hint = String.format("Usage %d of %d in this file", navigateIndex + 1, myUsages.size());
+          UsageOffsetNavigator.navigateAndHint(parameters.project, myUsages.get(navigateIndex), hint);
+          finishLatency(parameters, myUsages.size(), false);
+        }
+        else if (actionHandler.isValid()) {
+          if (Registry.is("znavi.fast.references") && FastReferenceEngine.isApplicable(element)) {
+            navigateWithFastEngine(element, parameters, actionHandler, direction, plan);
+          }
+          else {
+            showElementUsages(parameters, actionHandler, direction, plan);
+          }
+        }
+      }
+    }.queue();
+  }
+
+  /**
+   * Navigates over usages found by {@link FastReferenceEngine} without creating usage view,
+   * falls back to {@link #showElementUsages} if the engine can't handle the element.
+   */
+  private static void navigateWithFastEngine(@NotNull PsiElement element,
+                                             @NotNull ShowUsagesParameters parameters,
+                                             @NotNull ShowUsagesActionHandler actionHandler,
+                                             int direction,
+                                             @NotNull SearchPlan plan) {
+    SearchScope searchScope = actionHandler.getSelectedScope();
+    long start = System.currentTimeMillis();
+    new Task.Backgroundable(parameters.project, UsageViewBundle.message("progress.searching"), true) {
+      private List<UsageOffset> myUsages;
+
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        myUsages = FastReferenceEngine.findUsages(element, searchScope, indicator);
+      }
+
+      @Override
+      public void onSuccess() {
+        if (myUsages != null) {
+          SearchPlanner.getInstance().record(plan, System.currentTimeMillis() - start, myUsages.size());
+          UsageOffsetNavigator.navigate(parameters.project, parameters.editor, myUsages, direction, searchScope);
+          finishLatency(parameters, myUsages.size(), false);
+        }
+        else if (actionHandler.isValid()) {
+          showElementUsages(parameters, actionHandler, direction, plan);
+        }
+      }
+    }.queue();
   }
 
   private static void rulesChanged(@NotNull UsageViewImpl usageView, @NotNull PingEDT pingEDT, JBPopup popup) {
@@ -359,8 +604,20 @@ public class ShowUsagesActionClone extends AnAction implements PopupAction, Hint
 
   static void showElementUsages(@NotNull ShowUsagesParameters parameters, @NotNull ShowUsagesActionHandler actionHandler,
                                 int direction) {
-    trace();
+    showElementUsages(parameters, actionHandler, direction, SearchPlan.DEFAULT);
+  }
+
+  static void showElementUsages(@NotNull ShowUsagesParameters parameters, @NotNull ShowUsagesActionHandler actionHandler,
+                                int direction, @NotNull SearchPlan plan) {
+    edtSection("Show element usages", null, () -> doShowElementUsages(parameters, actionHandler, direction, plan)).run();
+  }
+
+  private static void doShowElementUsages(@NotNull ShowUsagesParameters parameters, @NotNull ShowUsagesActionHandler actionHandler,
+                                          int direction, @NotNull SearchPlan plan) {
     ApplicationManager.getApplication().assertIsDispatchThread();
+    long edtStart = System.nanoTime();
+    SearcherStartEvent startEvent = new SearcherStartEvent();
+    startEvent.begin();
 
     Project project = parameters.project;
     Editor editor = parameters.editor;
@@ -401,19 +658,20 @@ public class ShowUsagesActionClone extends AnAction implements PopupAction, Hint
     if (!popup.isDisposed()) {
       Disposer.register(popup, usageView);
       Disposer.register(popup, indicator::cancel);
-
-      // show popup only if find usages takes more than 300ms, otherwise it would flicker needlessly
+    }
+    if (!popup.isDisposed() && plan.getPopupDelayMs() != SearchPlan.NEVER_SHOW) {
+      // show popup only if find usages takes more than planned delay, otherwise it would flicker needlessly
       EdtScheduledExecutorService.getInstance().schedule(() -> {
         if (!usageView.isDisposed()) {
           showPopupIfNeedTo(popup, parameters.popupPosition);
         }
-      }, 1000, TimeUnit.MILLISECONDS);
+      }, plan.getPopupDelayMs(), TimeUnit.MILLISECONDS);
     }
 
     UsageNode USAGES_OUTSIDE_SCOPE_NODE = new UsageNode(null, table.USAGES_OUTSIDE_SCOPE_SEPARATOR);
     UsageNode MORE_USAGES_SEPARATOR_NODE = new UsageNode(null, table.MORE_USAGES_SEPARATOR);
 
-    PingEDT pingEDT = new PingEDT("Rebuild popup in EDT", () -> popup.isDisposed(), 100, () -> {
+    PingEDT pingEDT = new PingEDT("Rebuild popup in EDT", () -> popup.isDisposed(), 100, edtSection("Rebuild usages popup", parameters.latency, () -> {
       if (popup.isDisposed()) return;
 
       List<UsageNode> nodes = new ArrayList<>(usages.size());
@@ -459,34 +717,75 @@ public class ShowUsagesActionClone extends AnAction implements PopupAction, Hint
           }
         });
       }
+      SortEvent sortEvent = new SortEvent();
+      sortEvent.begin();
       data.sort(new UsageNodeComparator(table));
+      if (sortEvent.shouldCommit()) {
+        sortEvent.what = "popup rows";
+        sortEvent.size = data.size();
+        sortEvent.commit();
+      }
+      if (ZNaviTrace.isEnabled(TraceLevel.TRACE)) {
+        ZNaviTrace.log(TraceLevel.TRACE, TracePhase.REBUILD, data.size() + " rows, " + filteredOutCount + " filtered out");
+      }
 
       boolean hasMore = shouldShowMoreSeparator || hasOutsideScopeUsages;
       int totalCount = copy.size();
       int visibleCount = totalCount - filteredOutCount;
       statusPanel.setText(getStatusString(!processIcon.isDisposed(), hasMore, visibleCount, totalCount));
       rebuildTable(usageView, data, table, popup, parameters.popupPosition, parameters.minWidth);
-    });
+    }));
 
     MessageBusConnection messageBusConnection = project.getMessageBus().connect(usageView);
     messageBusConnection.subscribe(UsageFilteringRuleProvider.RULES_CHANGED, () -> rulesChanged(usageView, pingEDT, popup));
 
 
     Map<Usage, UsageNode> usageNodes = new HashMap<>();
+    SearchEvent searchEvent = new SearchEvent();
+    FirstUsageEvent firstUsageEvent = new FirstUsageEvent();
+    UsageBatchEvent[] batchEvent = {null};
+    // may be called concurrently by partitions of ParallelUsageSearcher, so every access to the accumulators is synchronized
     Processor<Usage> collect = usage -> {
       if (!UsageViewManagerImpl.isInScope(usage, searchScope)) {
         if (outOfScopeUsages.getAndIncrement() == 0) {
-          visibleUsages.add(USAGES_OUTSIDE_SCOPE_NODE.getUsage());
-          usages.add(table.USAGES_OUTSIDE_SCOPE_SEPARATOR);
+          synchronized (usages) {
+            visibleUsages.add(USAGES_OUTSIDE_SCOPE_NODE.getUsage());
+            usages.add(table.USAGES_OUTSIDE_SCOPE_SEPARATOR);
+          }
         }
         return true;
       }
       synchronized (usages) {
         if (visibleUsages.size() >= parameters.maxUsages) return false;
+        if (batchEvent[0] == null) {
+          batchEvent[0] = new UsageBatchEvent();
+          batchEvent[0].begin();
+        }
+        UsageBatchEvent batch = batchEvent[0];
+        long appendStart = batch.isEnabled() ? System.nanoTime() : 0;
         UsageNode nodes = ReadAction.compute(() -> usageView.doAppendUsage(usage));
+        if (appendStart != 0) {
+          batch.appendNanos += System.nanoTime() - appendStart;
+        }
         usageNodes.put(usage, nodes);
         usages.add(usage);  //fixme add to map and read later
+        if (ZNaviTrace.isEnabled(TraceLevel.TRACE)) {
+          int appended = usages.size();
+          ZNaviTrace.sampled(TraceLevel.TRACE, TracePhase.APPEND, () -> appended + ": " + usage);
+        }
+        if (++batch.usages == USAGE_BATCH_SIZE) {
+          commitBatch(batch, usages.size());
+          batchEvent[0] = null;
+        }
         if (nodes != null) {
+          if (visibleUsages.isEmpty() && ZNaviTrace.isEnabled(TraceLevel.DEBUG)) {
+            ZNaviTrace.log(TraceLevel.DEBUG, TracePhase.FIRST_USAGE, String.valueOf(usage));
+          }
+          if (visibleUsages.isEmpty() && firstUsageEvent.shouldCommit()) {
+            firstUsageEvent.targetKind = plan.getKind();
+            firstUsageEvent.scope = searchScope.getDisplayName();
+            firstUsageEvent.commit();
+          }
           visibleUsages.add(nodes.getUsage());
           boolean continueSearch = true;
           if (visibleUsages.size() == parameters.maxUsages) {
@@ -503,9 +802,41 @@ public class ShowUsagesActionClone extends AnAction implements PopupAction, Hint
       return true;
     };
 
-    UsageSearcher usageSearcher = actionHandler.createUsageSearcher();
+    UsageSearcher usageSearcher = ProfilingUsageSearcher.wrap(
+      plan.isParallel() ? ParallelUsageSearcher.create(project, actionHandler) : actionHandler.createUsageSearcher(),
+      project, actionHandler.getPresentation().getSearchString()
+    );
+    long searchStart = System.currentTimeMillis();
+    if (ZNaviTrace.isEnabled(TraceLevel.DEBUG)) {
+      ZNaviTrace.log(TraceLevel.DEBUG, TracePhase.SEARCH_START, plan.getKind() + " in " + searchScope.getDisplayName() +
+                                                                (plan.isParallel() ? ", parallel" : ", serial"));
+    }
+    if (startEvent.shouldCommit()) {
+      startEvent.targetKind = plan.getKind();
+      startEvent.scope = searchScope.getDisplayName();
+      startEvent.parallel = plan.isParallel();
+      startEvent.commit();
+    }
+    searchEvent.begin();
+    firstUsageEvent.begin();
     FindUsagesManager.startProcessUsages(indicator, project, usageSearcher, collect, () -> ApplicationManager.getApplication().invokeLater(
-      () -> {
+      edtSection("Show usages search completed", parameters.latency, () -> {
+        SearchPlanner.getInstance().record(plan, System.currentTimeMillis() - searchStart, usages.size());
+        synchronized (usages) {
+          if (batchEvent[0] != null) {
+            commitBatch(batchEvent[0], usages.size());
+            batchEvent[0] = null;
+          }
+          if (searchEvent.shouldCommit()) {
+            searchEvent.targetKind = plan.getKind();
+            searchEvent.scope = searchScope.getDisplayName();
+            searchEvent.usages = usages.size();
+            searchEvent.visibleUsages = visibleUsages.size();
+            searchEvent.outOfScopeUsages = outOfScopeUsages.get();
+            searchEvent.cancelled = indicator.isCanceled();
+            searchEvent.commit();
+          }
+        }
         Disposer.dispose(processIcon);
         Container parent = processIcon.getParent();
         if (parent != null) {
@@ -514,14 +845,31 @@ public class ShowUsagesActionClone extends AnAction implements PopupAction, Hint
         }
         pingEDT.ping(); // repaint status
         synchronized (usages) {
-          System.out.println("### Log znavi usages");
           int selfUsageIndex = -1;
-          usages.sort(Comparator.comparing(a -> getUsageString(usageNodes, a)));
+          SortEvent sortEvent = new SortEvent();
+          sortEvent.begin();
+          long sortStart = System.nanoTime();
+          // the same ring as the fast and file local navigation walk over
+          UsageRows.sortByKey(usages, ShowUsagesActionClone::toUsageOffset, UsageOffset.ORDER);
+          if (sortEvent.shouldCommit()) {
+            sortEvent.what = "usages";
+            sortEvent.size = usages.size();
+            sortEvent.commit();
+          }
+          if (ZNaviTrace.isEnabled(TraceLevel.DEBUG)) {
+            ZNaviTrace.log(TraceLevel.DEBUG, TracePhase.SORT, usages.size() + " usages in " +
+                                                              TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sortStart) + "us");
+          }
+          if (ZNaviTrace.isEnabled(TraceLevel.DEBUG)) {
+            ZNaviTrace.log(TraceLevel.DEBUG, TracePhase.COMPLETE, usages.size() + " usages, " + visibleUsages.size() + " visible, " +
+                                                                  outOfScopeUsages.get() + " out of scope, cancelled " + indicator.isCanceled());
+          }
 
           for (int i = 0; i < usages.size(); i++) {
             Usage usage = usages.get(i);
-            String nodeString = getUsageString(usageNodes, usage);
-            System.out.println(nodeString);
+            if (ZNaviTrace.isEnabled(TraceLevel.TRACE)) {
+              ZNaviTrace.sampled(TraceLevel.TRACE, TracePhase.COMPLETE, () -> getUsageString(usageNodes, usage));
+            }
             if (usageView.isOriginUsage(usage)) {
               selfUsageIndex = i;
             }
@@ -559,6 +907,9 @@ public class ShowUsagesActionClone extends AnAction implements PopupAction, Hint
                 navigateAndHint(visibleUsage, hint, parameters, actionHandler);
                 cancel(popup);
               }
+              else if (plan.getPopupDelayMs() == SearchPlan.NEVER_SHOW) {
+                showPopupIfNeedTo(popup, parameters.popupPosition);
+              }
             }
           } else {
             int navigateIndex;
@@ -576,32 +927,60 @@ public class ShowUsagesActionClone extends AnAction implements PopupAction, Hint
             );
             cancel(popup);
           }
+          finishLatency(parameters, usages.size(), indicator.isCanceled());
         }
-      },
+      }),
       project.getDisposed()
     ));
+    if (parameters.latency != null) {
+      parameters.latency.addEdt(System.nanoTime() - edtStart);
+    }
+  }
+
+  /**
+   * Wraps EDT work of the search: its time is added to the latency measurement and it's watched by {@link EdtWatchdog}.
+   */
+  private static @NotNull Runnable edtSection(@NotNull String name, @Nullable LatencyMeasurement latency, @NotNull Runnable runnable) {
+    return () -> {
+      EdtWatchdog watchdog = EdtWatchdog.getInstance();
+      watchdog.enter(name);
+      long start = System.nanoTime();
+      try {
+        runnable.run();
+      }
+      finally {
+        if (latency != null) {
+          latency.addEdt(System.nanoTime() - start);
+        }
+        watchdog.exit();
+      }
+    };
   }
 
-  private static void trace() {
-    new RuntimeException().printStackTrace();
+  private static void finishLatency(@NotNull ShowUsagesParameters parameters, int usages, boolean cancelled) {
+    if (parameters.latency != null) {
+      parameters.latency.finish(usages, cancelled);
+    }
+  }
+
+  private static void commitBatch(@NotNull UsageBatchEvent batch, int totalUsages) {
+    if (batch.shouldCommit()) {
+      batch.totalUsages = totalUsages;
+      batch.commit();
+    }
   }
 
   @NotNull
   private static String getUsageString(Map<Usage, UsageNode> usageNodes, Usage usage) {
     UsageNode node = usageNodes.get(usage);
-    String nodeString = nodeToString((GroupNode) node.getParent()) + "|" + usage;
-    return nodeString;
-  }
-
-  private static String nodeToString(GroupNode node) {
-    if (node == null) {
-      return "";
-    }
-    UsageGroup group = node.getGroup();
-    if (group == null) {
-      return "";
+    List<String> groups = new ArrayList<>();
+    for (GroupNode parent = (GroupNode)node.getParent(); parent != null; parent = (GroupNode)parent.getParent()) {
+      UsageGroup group = parent.getGroup();
+      if (group == null) break;
+      groups.add(group.getText(null));  //TODO unimplemnted
     }
-    return nodeToString((GroupNode) node.getParent()) + "|" + group.getText(null);  //TODO unimplemnted
+    Collections.reverse(groups);
+    return UsageRows.groupPathKey(groups, usage.toString());
   }
 
   private static void toggleFilters(@NotNull List<? extends ToggleAction> unselectedActions) {
@@ -869,7 +1248,15 @@ public class ShowUsagesActionClone extends AnAction implements PopupAction, Hint
   }
 
   private static int getFilteredOutNodeCount(@NotNull List<? extends Usage> usages, @NotNull UsageViewImpl usageView) {
-    return (int)usages.stream().filter(usage -> !usageView.isVisible(usage)).count();
+    return UsageRows.count(usages, usage -> !usageView.isVisible(usage));
+  }
+
+  private static @Nullable UsageOffset toUsageOffset(@NotNull Usage usage) {
+    if (!(usage instanceof UsageInfo2UsageAdapter)) return null;
+    UsageInfo usageInfo = ((UsageInfo2UsageAdapter)usage).getUsageInfo();
+    VirtualFile file = usageInfo.getVirtualFile();
+    int offset = usageInfo.getNavigationOffset();
+    return file == null || offset < 0 ? null : new UsageOffset(file, offset);
   }
 
   private static int getUsageOffset(@NotNull Usage usage) {
@@ -968,17 +1355,7 @@ public class ShowUsagesActionClone extends AnAction implements PopupAction, Hint
                                  @NotNull List<? extends UsageNode> listOld,
                                  @NotNull List<? extends UsageNode> listNew,
                                  int oldSelection) {
-    UsageNode[] oa = listOld.toArray(new UsageNode[0]);
-    UsageNode[] na = listNew.toArray(new UsageNode[0]);
-    List<ModelDiff.Cmd> cmds = ModelDiff.createDiffCmds(tableModel, oa, na);
-    int selection = oldSelection;
-    if (cmds != null) {
-      for (ModelDiff.Cmd cmd : cmds) {
-        selection = cmd.translateSelection(selection);
-        cmd.apply();
-      }
-    }
-    return selection;
+    return UsageRows.updateModel(tableModel, listOld, listNew, oldSelection);
   }
 
   private static void setSizeAndDimensions(@NotNull JTable table,
@@ -1063,17 +1440,27 @@ public class ShowUsagesActionClone extends AnAction implements PopupAction, Hint
                                       @Nls(capitalization = Sentence) @NotNull String hint,
                                       @NotNull ShowUsagesParameters parameters,
                                       @NotNull ShowUsagesActionHandler actionHandler) {
+    NavigateEvent event = new NavigateEvent();
+    event.begin();
     usage.navigate(true);
     Editor newEditor = getEditorFor(usage);
-    if (newEditor == null) return;
-    hint(false, hint, parameters.withEditor(newEditor), actionHandler);
+    if (newEditor != null) {
+      hint(false, hint, parameters.withEditor(newEditor), actionHandler);
+    }
+    if (event.shouldCommit()) {
+      event.navigated = newEditor != null;
+      event.hint = hint;
+      event.commit();
+    }
   }
 
   private static void hint(boolean isWarning,
                            @Nls(capitalization = Sentence) @NotNull String hint,
                            @NotNull ShowUsagesParameters parameters,
                            @NotNull ShowUsagesActionHandler actionHandler) {
-    trace();
+    if (ZNaviTrace.isEnabled(TraceLevel.DEBUG)) {
+      ZNaviTrace.log(TraceLevel.DEBUG, TracePhase.NAVIGATE, (isWarning ? "warning hint: " : "hint: ") + hint);
+    }
     Project project = parameters.project;
     Editor editor = parameters.editor;
 
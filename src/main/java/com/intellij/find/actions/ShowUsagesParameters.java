@@ -1,6 +1,7 @@
 // Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
 package com.intellij.find.actions;
 
+import com.github.volkov.znavi.diagnostics.LatencyMeasurement;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.IntRef;
@@ -17,28 +18,42 @@ final class ShowUsagesParameters {
   final @NotNull RelativePoint popupPosition;
   final @NotNull IntRef minWidth;
   final int maxUsages;
+  final @Nullable LatencyMeasurement latency;
 
   private ShowUsagesParameters(@NotNull Project project,
                                @Nullable Editor editor,
                                @NotNull RelativePoint popupPosition,
                                @NotNull IntRef minWidth,
-                               int maxUsages) {
+                               int maxUsages,
+                               @Nullable LatencyMeasurement latency) {
     this.project = project;
     this.editor = editor;
     this.popupPosition = popupPosition;
     this.minWidth = minWidth;
     this.maxUsages = maxUsages;
+    this.latency = latency;
   }
 
   @NotNull ShowUsagesParameters moreUsages() {
-    return new ShowUsagesParameters(project, editor, popupPosition, minWidth, maxUsages + getUsagesPageSize());
+    return new ShowUsagesParameters(project, editor, popupPosition, minWidth, maxUsages + getUsagesPageSize(), latency);
+  }
+
+  @NotNull ShowUsagesParameters firstPage(int pageSize) {
+    return new ShowUsagesParameters(project, editor, popupPosition, minWidth, Math.min(maxUsages, pageSize), latency);
   }
 
   @NotNull ShowUsagesParameters withEditor(@NotNull Editor editor) {
-    return new ShowUsagesParameters(project, editor, popupPosition, minWidth, maxUsages);
+    return new ShowUsagesParameters(project, editor, popupPosition, minWidth, maxUsages, latency);
   }
 
   static @NotNull ShowUsagesParameters initial(@NotNull Project project, @Nullable Editor editor, @NotNull RelativePoint popupPosition) {
-    return new ShowUsagesParameters(project, editor, popupPosition, new IntRef(0), getUsagesPageSize());
+    return initial(project, editor, popupPosition, null);
+  }
+
+  static @NotNull ShowUsagesParameters initial(@NotNull Project project,
+                                               @Nullable Editor editor,
+                                               @NotNull RelativePoint popupPosition,
+                                               @Nullable LatencyMeasurement latency) {
+    return new ShowUsagesParameters(project, editor, popupPosition, new IntRef(0), getUsagesPageSize(), latency);
   }
 }
@@ -0,0 +1,31 @@
+package com.github.volkov.znavi
+
+import com.github.volkov.znavi.callers.CallerGraph
+import com.github.volkov.znavi.lang.ContainingFunctionProvider
+import com.github.volkov.znavi.ui.CallerTreePopup
+import com.intellij.openapi.actionSystem.AnAction
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.actionSystem.CommonDataKeys
+import com.intellij.openapi.project.DumbService
+import com.intellij.openapi.ui.popup.JBPopupFactory
+
+/**
+ * Shows callers of the method containing the caret as a tree which is expanded level by level.
+ */
+class ZNaviCallerTreeAction : AnAction() {
+
+    override fun update(e: AnActionEvent) {
+        val project = e.project
+        e.presentation.isEnabled = project != null && e.getData(CommonDataKeys.EDITOR) != null && !DumbService.isDumb(project)
+    }
+
+    override fun actionPerformed(e: AnActionEvent) {
+        val project = e.project ?: return
+        val editor = e.getData(CommonDataKeys.EDITOR) ?: return
+        val psiFile = e.getData(CommonDataKeys.PSI_FILE) ?: return
+        val element = psiFile.findElementAt(editor.caretModel.offset) ?: return
+        val function = ContainingFunctionProvider.find(element) ?: return
+        CallerTreePopup(project, function, CallerGraph.presentableName(function))
+            .show(JBPopupFactory.getInstance().guessBestPopupLocation(e.dataContext))
+    }
+}
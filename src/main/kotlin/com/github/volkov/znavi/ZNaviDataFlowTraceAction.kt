@@ -0,0 +1,64 @@
+package com.github.volkov.znavi
+
+import com.github.volkov.znavi.parameters.ArgumentSearch
+import com.github.volkov.znavi.parameters.DataFlowTrace
+import com.github.volkov.znavi.ui.DataFlowTreePopup
+import com.intellij.codeInsight.TargetElementUtil
+import com.intellij.codeInsight.hint.HintManager
+import com.intellij.find.FindSettings
+import com.intellij.find.findUsages.FindUsagesOptions
+import com.intellij.openapi.actionSystem.AnAction
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.actionSystem.CommonDataKeys
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.progress.Task
+import com.intellij.openapi.project.DumbService
+import com.intellij.openapi.ui.popup.JBPopupFactory
+
+/**
+ * Traces where the value of the parameter at the caret comes from through several levels of callers.
+ */
+class ZNaviDataFlowTraceAction : AnAction() {
+
+    override fun update(e: AnActionEvent) {
+        val project = e.project
+        e.presentation.isEnabled = project != null && e.getData(CommonDataKeys.EDITOR) != null && !DumbService.isDumb(project)
+    }
+
+    override fun actionPerformed(e: AnActionEvent) {
+        val project = e.project ?: return
+        val editor = e.getData(CommonDataKeys.EDITOR) ?: return
+        val parameter = TargetElementUtil.getInstance().findTargetElement(editor,
+            TargetElementUtil.ELEMENT_NAME_ACCEPTED or TargetElementUtil.REFERENCED_ELEMENT_ACCEPTED)
+        if (parameter == null || !ArgumentSearch.isApplicable(parameter)) {
+            HintManager.getInstance().showErrorHint(editor, "No parameter at caret")
+            return
+        }
+        val scope = FindUsagesOptions.findScopeByName(project, e.dataContext, FindSettings.getInstance().defaultScopeName)
+        val popup = DataFlowTreePopup(project, "Data flow")
+        popup.show(JBPopupFactory.getInstance().guessBestPopupLocation(e.dataContext))
+
+        val task = object : Task.Backgroundable(project, "Tracing data flow", true) {
+            private var finished = false
+
+            @Volatile
+            var indicator: ProgressIndicator? = null
+
+            override fun run(indicator: ProgressIndicator) {
+                this.indicator = indicator
+                if (popup.isDisposed) return
+                finished = DataFlowTrace(scope) { popup.add(it) }.run(parameter, indicator)
+            }
+
+            override fun onSuccess() {
+                if (!popup.isDisposed) popup.setStatus(if (finished) "Done" else "Time limit exceeded")
+            }
+
+            override fun onCancel() {
+                if (!popup.isDisposed) popup.setStatus("Cancelled")
+            }
+        }
+        popup.addCloseListener { task.indicator?.cancel() }
+        task.queue()
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.volkov.znavi
+
+import com.github.volkov.znavi.diagnostics.ZNaviTrace
+import com.intellij.notification.NotificationGroupManager
+import com.intellij.notification.NotificationType
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.application.PathManager
+import com.intellij.openapi.fileEditor.FileEditorManager
+import com.intellij.openapi.project.DumbAwareAction
+import com.intellij.openapi.vfs.LocalFileSystem
+import java.io.File
+import java.io.IOException
+import java.text.SimpleDateFormat
+import java.util.Date
+
+/**
+ * Writes the records captured by [ZNaviTrace] to a file in the log directory and opens it.
+ */
+class ZNaviDumpTraceAction : DumbAwareAction() {
+
+    override fun actionPerformed(e: AnActionEvent) {
+        val project = e.project ?: return
+        val records = ZNaviTrace.records()
+        val notifications = NotificationGroupManager.getInstance().getNotificationGroup("ZNavi")
+        if (records.isEmpty()) {
+            notifications.createNotification("No ZNavi trace captured, set znavi.trace.level registry key", NotificationType.INFORMATION)
+                .notify(project)
+            return
+        }
+        val file = File(PathManager.getLogPath(), "znavi-trace-${SimpleDateFormat("yyyyMMdd-HHmmss").format(Date())}.txt")
+        try {
+            file.writeText(records.joinToString("\n", postfix = "\n"))
+        } catch (ex: IOException) {
+            notifications.createNotification("Can't write ZNavi trace: ${ex.message}", NotificationType.ERROR).notify(project)
+            return
+        }
+        val virtualFile = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(file) ?: return
+        FileEditorManager.getInstance(project).openFile(virtualFile, true)
+    }
+}
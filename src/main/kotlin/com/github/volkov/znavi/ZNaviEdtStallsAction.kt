@@ -0,0 +1,34 @@
+package com.github.volkov.znavi
+
+import com.github.volkov.znavi.diagnostics.EdtWatchdog
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.project.DumbAwareAction
+import com.intellij.openapi.ui.popup.JBPopupFactory
+import com.intellij.ui.ScrollPaneFactory
+import com.intellij.ui.components.JBTextArea
+import com.intellij.util.ui.JBUI
+
+/**
+ * Shows the last EDT stalls caught by [EdtWatchdog], the newest first.
+ */
+class ZNaviEdtStallsAction : DumbAwareAction() {
+
+    override fun actionPerformed(e: AnActionEvent) {
+        val project = e.project ?: return
+        val reports = EdtWatchdog.getInstance().reports().asReversed()
+        val text = if (reports.isEmpty()) "No EDT stalls recorded" else reports.joinToString("\n")
+        val area = JBTextArea(text).apply {
+            isEditable = false
+            font = JBUI.Fonts.create("Monospaced", JBUI.Fonts.label().size)
+            caretPosition = 0
+        }
+        JBPopupFactory.getInstance().createComponentPopupBuilder(ScrollPaneFactory.createScrollPane(area), area)
+            .setTitle("ZNavi EDT Stalls")
+            .setMovable(true)
+            .setResizable(true)
+            .setRequestFocus(true)
+            .setMinSize(JBUI.size(600, 300))
+            .createPopup()
+            .showCenteredInCurrentWindow(project)
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.volkov.znavi
+
+import com.github.volkov.znavi.callers.CallPathSearch
+import com.github.volkov.znavi.callers.CallerGraph
+import com.github.volkov.znavi.lang.ContainingFunctionProvider
+import com.github.volkov.znavi.ui.CallPathPopup
+import com.intellij.codeInsight.hint.HintManager
+import com.intellij.openapi.actionSystem.AnAction
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.actionSystem.CommonDataKeys
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.progress.Task
+import com.intellij.openapi.project.DumbService
+import com.intellij.openapi.ui.popup.JBPopupFactory
+
+/**
+ * Finds a call path from the entry point marked with [ZNaviMarkCallPathSourceAction] to the method containing the caret.
+ */
+class ZNaviFindCallPathAction : AnAction() {
+
+    override fun update(e: AnActionEvent) {
+        val project = e.project
+        e.presentation.isEnabled = project != null && e.getData(CommonDataKeys.EDITOR) != null && !DumbService.isDumb(project)
+    }
+
+    override fun actionPerformed(e: AnActionEvent) {
+        val project = e.project ?: return
+        val editor = e.getData(CommonDataKeys.EDITOR) ?: return
+        val psiFile = e.getData(CommonDataKeys.PSI_FILE) ?: return
+        val element = psiFile.findElementAt(editor.caretModel.offset) ?: return
+        val target = ContainingFunctionProvider.find(element) ?: return
+        val source = project.getUserData(ZNaviMarkCallPathSourceAction.SOURCE)?.element
+        if (source == null) {
+            HintManager.getInstance().showErrorHint(editor, "Mark the entry point with ZNavi Mark Call Path Entry Point first")
+            return
+        }
+
+        val title = "Call path ${CallerGraph.presentableName(source)} → ${CallerGraph.presentableName(target)}"
+        val popup = CallPathPopup(project, title)
+        popup.show(JBPopupFactory.getInstance().guessBestPopupLocation(e.dataContext))
+        val task = object : Task.Backgroundable(project, title, true) {
+            private var outcome: CallPathSearch.Outcome? = null
+
+            @Volatile
+            var indicator: ProgressIndicator? = null
+
+            override fun run(indicator: ProgressIndicator) {
+                this.indicator = indicator
+                if (popup.isDisposed) return
+                val search = CallPathSearch(project, source, target) { path ->
+                    ApplicationManager.getApplication().invokeLater({ popup.setPath(path) }, { popup.isDisposed })
+                }
+                outcome = search.run(indicator)
+            }
+
+            override fun onSuccess() {
+                if (popup.isDisposed) return
+                popup.setStatus(when (outcome) {
+                    CallPathSearch.Outcome.FOUND -> "Shortest path found"
+                    CallPathSearch.Outcome.NOT_FOUND -> "No call path"
+                    CallPathSearch.Outcome.DEPTH_EXCEEDED -> "No call path within the depth limit"
+                    else -> "Search time limit exceeded"
+                })
+            }
+
+            override fun onCancel() {
+                if (!popup.isDisposed) popup.setStatus("Search cancelled")
+            }
+
+            override fun shouldStartInBackground(): Boolean = true
+        }
+        popup.addCloseListener { task.indicator?.cancel() }
+        task.queue()
+    }
+}
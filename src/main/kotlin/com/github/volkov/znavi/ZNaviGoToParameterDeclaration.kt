@@ -1,15 +1,20 @@
 package com.github.volkov.znavi
 
-import com.intellij.codeInsight.TargetElementUtil
+import com.github.volkov.znavi.diagnostics.NavigationKind
+import com.github.volkov.znavi.diagnostics.NavigationStats
+import com.github.volkov.znavi.diagnostics.SessionRecorder
+import com.github.volkov.znavi.parameters.ArgumentMap
+import com.github.volkov.znavi.parameters.ParameterResolver
 import com.intellij.codeInsight.navigation.actions.GotoDeclarationAction
 import com.intellij.ide.util.EditSourceUtil
 import com.intellij.openapi.actionSystem.AnActionEvent
 import com.intellij.openapi.actionSystem.CommonDataKeys
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.progress.Task
 import com.intellij.pom.Navigatable
 import com.intellij.psi.*
-import com.intellij.psi.util.PsiTreeUtil.getChildrenOfType
-import com.intellij.psi.util.PsiTreeUtil.getParentOfType
-import org.jetbrains.kotlin.psi.psiUtil.startOffset
+import java.util.concurrent.Callable
 
 /**
  * User: serg-v
@@ -19,79 +24,55 @@ import org.jetbrains.kotlin.psi.psiUtil.startOffset
 class ZNaviGoToParameterDeclaration : GotoDeclarationAction() {
 
     override fun actionPerformed(e: AnActionEvent) {
+        val project = e.project
         val editor = e.getData(CommonDataKeys.EDITOR)
         val file = e.getData(CommonDataKeys.PSI_FILE)
-        if (file == null || editor == null) return
+        if (project == null || file == null || editor == null) return
 
+        val stats = NavigationStats.getInstance()
+        val latency = stats.start(NavigationKind.PARAMETER)
+        latency.context = SessionRecorder.getInstance().context(null, editor, null)
+        PsiDocumentManager.getInstance(project).commitAllDocuments()
         val offset = editor.caretModel.offset
-        val underCursor = file.findElementAt(offset)!!
-        println("### under cursor: $underCursor")
-
-        val anyCall = getParentOfType(underCursor, PsiCallExpression::class.java) ?: return //should support other languages
-        val anyOffset = anyCall.startOffset
-        println("### any call $anyOffset")
-        println(anyCall)
-
-        val methodTarget = anyCall.resolveMethod()!!
-        println("### method target")
-        println(methodTarget)
+        val mapped = ArgumentMap.get(file, editor.document.modificationStamp)?.parameterAt(offset)
+        if (mapped != null && mapped.isValid) {
+            stats.cacheHit(NavigationStats.ARGUMENT_MAP)
+            navigate(mapped)
+            latency.finish(1, false)
+            return
+        }
+        stats.cacheMiss(NavigationStats.ARGUMENT_MAP)
+        object : Task.Backgroundable(project, "Resolving parameter", true) {
+            private var parameterElement: PsiElement? = null
 
-        val parameterIndex = findParameterIndex(underCursor)
-        println("### arg index $parameterIndex")
+            override fun run(indicator: ProgressIndicator) {
+                // restarted instead of blocking write actions, cancelled if the editor is closed
+                parameterElement = ReadAction.nonBlocking(Callable { ParameterResolver.findParameter(file, offset) })
+                    .inSmartMode(project)
+                    .expireWhen { editor.isDisposed || !file.isValid }
+                    .executeSynchronously()
+            }
 
-        //TargetElementUtil.getInstance().findTargetElement(editor, TargetElementUtil.getInstance().allAccepted, anyOffset)
+            override fun onSuccess() {
+                val parameter = parameterElement?.takeIf { it.isValid }
+                if (parameter != null) navigate(parameter)
+                latency.finish(if (parameter != null) 1 else 0, false)
+            }
 
-        val navigationElement = methodTarget.navigationElement
-        val trueNavigationElement = TargetElementUtil.getInstance().getGotoDeclarationTarget(methodTarget, navigationElement)
-        println("### true navigation elemnent")
-        println(trueNavigationElement)
-        val parameterElement = findParameter(trueNavigationElement, parameterIndex)
-        println("### parameter element")
-        println(parameterElement)
+            override fun onCancel() {
+                latency.finish(0, true)
+            }
+        }.queue()
+    }
 
+    private fun navigate(parameter: PsiElement) {
         val navigatable =
-                if (parameterElement is Navigatable)
-                    parameterElement
-                else EditSourceUtil.getDescriptor(parameterElement)
+                if (parameter is Navigatable)
+                    parameter
+                else EditSourceUtil.getDescriptor(parameter)
 
         if (navigatable != null && navigatable.canNavigate()) {
             navigatable.navigate(true)
         }
-
-        println("ok")
-    }
-
-    private fun findParameter(element: PsiElement, index: Int): PsiElement {
-        var paramInex = -1
-        var lastParameter : PsiElement? = null
-        println("### children")
-        for (child in getChildrenOfType(element, PsiParameterList::class.java)[0].children) {
-            println(child)
-            if (child is PsiParameter) {
-                lastParameter = child
-                paramInex++
-                if (paramInex == index) {
-                    return child
-                }
-            }
-        }
-        return lastParameter!!
-    }
-
-    private fun findParameterIndex(element: PsiElement): Int {
-        var reference: PsiElement? = getParentOfType(element, PsiReferenceExpression::class.java)
-        var res = 0
-        reference = reference?.prevSibling
-        while (reference != null) {
-            if (reference is PsiExpression) {
-                res++
-            }
-            reference = reference.prevSibling
-            if (res > 100) {
-                println("### oops")
-                return res
-            }
-        }
-        return res
     }
-}
\ No newline at end of file
+}
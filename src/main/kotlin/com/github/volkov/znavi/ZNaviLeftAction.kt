@@ -1,16 +1,24 @@
 package com.github.volkov.znavi
 
+import com.github.volkov.znavi.callers.CallerSearch
+import com.github.volkov.znavi.diagnostics.NavigationKind
+import com.github.volkov.znavi.diagnostics.NavigationStats
+import com.github.volkov.znavi.diagnostics.SessionRecorder
+import com.github.volkov.znavi.lang.ContainingFunctionProvider
+import com.intellij.find.FindSettings
 import com.intellij.find.actions.ShowUsagesAction
+import com.intellij.find.findUsages.FindUsagesOptions
 import com.intellij.openapi.actionSystem.AnAction
 import com.intellij.openapi.actionSystem.AnActionEvent
-import com.intellij.psi.util.PsiTreeUtil
 
 import com.intellij.openapi.actionSystem.CommonDataKeys
 import com.intellij.openapi.editor.Editor
+import com.intellij.openapi.project.DumbService
 import com.intellij.openapi.ui.popup.JBPopupFactory
+import com.intellij.openapi.util.registry.Registry
+import com.intellij.psi.search.GlobalSearchScope
 
 import com.intellij.psi.*
-import org.jetbrains.kotlin.psi.KtFunction
 
 /**
  * User: serg-v
@@ -24,51 +32,28 @@ class ZNaviLeftAction : AnAction() {
         if (editor == null || psiFile == null) {
             return
         }
-        val offset = editor.caretModel.offset
-
-        val infoBuilder = StringBuilder()
-        val element = psiFile.findElementAt(offset)
-        infoBuilder.append("Element at caret: ").append(element).append("\n")
-        if (element != null) {
-            val containingMethod: PsiMethod? = PsiTreeUtil.getParentOfType(element, PsiMethod::class.java)
-            infoBuilder
-                    .append("Containing method: ")
-                    .append(containingMethod?.name ?: "none")
-                    .append("\n")
-            if (containingMethod != null) {
-                startFindUsages(containingMethod, anActionEvent, editor)
-
-
-                val containingClass: PsiClass? = containingMethod.containingClass
-                infoBuilder
-                        .append("Containing class: ")
-                        .append(if (containingClass != null) containingClass.name else "none")
-                        .append("\n")
-            }
-            val kotlinFunction = PsiTreeUtil.getParentOfType(element, KtFunction::class.java)
-            if (kotlinFunction != null) {
-                startFindUsages(kotlinFunction, anActionEvent, editor)
-            }
-            try {
-                val pyFunctionClass = Class.forName("com.jetbrains.python.psi.PyFunction") as Class<PsiElement>
-                val pyFunction = PsiTreeUtil.getParentOfType(element, pyFunctionClass)
-                if (pyFunction != null) {
-                    startFindUsages(pyFunction, anActionEvent, editor)
-                }
-            } catch (e: ClassNotFoundException) {
-                //no python
-            }
-
-
-        }
-        //Messages.showMessageDialog(anActionEvent.project, infoBuilder.toString(), "PSI Info", null)
+        val element = psiFile.findElementAt(editor.caretModel.offset) ?: return
+        val containingFunction = ContainingFunctionProvider.find(element) ?: return
+        startFindUsages(containingFunction, anActionEvent, editor)
     }
 
     private fun startFindUsages(containingMethod: PsiElement, anActionEvent: AnActionEvent, editor: Editor?) {
-        ShowUsagesAction.startFindUsages(
-                containingMethod,
-                JBPopupFactory.getInstance().guessBestPopupLocation(anActionEvent.dataContext),
-                editor
-        )
+        val latency = NavigationStats.getInstance().start(NavigationKind.CALLERS)
+        val popupPosition = JBPopupFactory.getInstance().guessBestPopupLocation(anActionEvent.dataContext)
+        // the platform search is not measured
+        val fullSearch = Runnable {
+            latency.abandon()
+            ShowUsagesAction.startFindUsages(containingMethod, popupPosition, editor)
+        }
+        val project = containingMethod.project
+        if (Registry.`is`("znavi.callers.index") && !DumbService.isDumb(project) && CallerSearch.isApplicable(containingMethod)) {
+            val scope = FindUsagesOptions.findScopeByName(project, anActionEvent.dataContext, FindSettings.getInstance().defaultScopeName)
+            if (scope is GlobalSearchScope) {
+                latency.context = SessionRecorder.getInstance().context(containingMethod, editor, scope)
+                CallerSearch.start(project, editor, popupPosition, containingMethod, scope, fullSearch, latency)
+                return
+            }
+        }
+        fullSearch.run()
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,41 @@
+package com.github.volkov.znavi
+
+import com.github.volkov.znavi.callers.CallerGraph
+import com.github.volkov.znavi.lang.ContainingFunctionProvider
+import com.intellij.codeInsight.hint.HintManager
+import com.intellij.openapi.actionSystem.AnAction
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.actionSystem.CommonDataKeys
+import com.intellij.openapi.util.Key
+import com.intellij.psi.PsiElement
+import com.intellij.psi.SmartPointerManager
+import com.intellij.psi.SmartPsiElementPointer
+
+/**
+ * Remembers the method containing the caret as the entry point for [ZNaviFindCallPathAction].
+ */
+class ZNaviMarkCallPathSourceAction : AnAction() {
+
+    override fun update(e: AnActionEvent) {
+        e.presentation.isEnabled = e.project != null && e.getData(CommonDataKeys.EDITOR) != null
+    }
+
+    override fun actionPerformed(e: AnActionEvent) {
+        val project = e.project ?: return
+        val editor = e.getData(CommonDataKeys.EDITOR) ?: return
+        val psiFile = e.getData(CommonDataKeys.PSI_FILE) ?: return
+        val element = psiFile.findElementAt(editor.caretModel.offset) ?: return
+        val function = ContainingFunctionProvider.find(element)
+        if (function == null) {
+            HintManager.getInstance().showErrorHint(editor, "No method at caret")
+            return
+        }
+        project.putUserData(SOURCE, SmartPointerManager.createPointer(function))
+        HintManager.getInstance().showInformationHint(editor, "Call path entry point: ${CallerGraph.presentableName(function)}")
+    }
+
+    companion object {
+        @JvmField
+        val SOURCE = Key.create<SmartPsiElementPointer<PsiElement>>("znavi.callpath.source")
+    }
+}
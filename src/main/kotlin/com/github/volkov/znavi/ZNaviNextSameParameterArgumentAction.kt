@@ -0,0 +1,35 @@
+package com.github.volkov.znavi
+
+import com.github.volkov.znavi.parameters.ArgumentMap
+import com.intellij.codeInsight.hint.HintManager
+import com.intellij.openapi.actionSystem.AnAction
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.actionSystem.CommonDataKeys
+import com.intellij.openapi.editor.ScrollType
+
+/**
+ * Moves the caret to the next argument in the file which is passed to the same parameter as the argument at the caret.
+ */
+class ZNaviNextSameParameterArgumentAction : AnAction() {
+
+    override fun update(e: AnActionEvent) {
+        e.presentation.isEnabled = e.getData(CommonDataKeys.EDITOR) != null && e.getData(CommonDataKeys.PSI_FILE) != null
+    }
+
+    override fun actionPerformed(e: AnActionEvent) {
+        val editor = e.getData(CommonDataKeys.EDITOR) ?: return
+        val file = e.getData(CommonDataKeys.PSI_FILE) ?: return
+        val map = ArgumentMap.get(file, editor.document.modificationStamp)
+        if (map == null) {
+            HintManager.getInstance().showInformationHint(editor, "Arguments are not analyzed yet")
+            return
+        }
+        val range = map.nextWithSameParameter(editor.caretModel.offset, 1)
+        if (range == null) {
+            HintManager.getInstance().showInformationHint(editor, "No other arguments for this parameter")
+            return
+        }
+        editor.caretModel.moveToOffset(range.startOffset)
+        editor.scrollingModel.scrollToCaret(ScrollType.MAKE_VISIBLE)
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.volkov.znavi
+
+import com.github.volkov.znavi.parameters.ArgumentSearch
+import com.intellij.codeInsight.TargetElementUtil
+import com.intellij.codeInsight.hint.HintManager
+import com.intellij.find.FindSettings
+import com.intellij.find.findUsages.FindUsagesOptions
+import com.intellij.openapi.actionSystem.AnAction
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.actionSystem.CommonDataKeys
+import com.intellij.openapi.project.DumbService
+import com.intellij.openapi.ui.popup.JBPopupFactory
+
+/**
+ * Shows values passed to the parameter at the caret (its declaration or a reference to it) at all the call sites.
+ */
+class ZNaviParameterArgumentsAction : AnAction() {
+
+    override fun update(e: AnActionEvent) {
+        val project = e.project
+        e.presentation.isEnabled = project != null && e.getData(CommonDataKeys.EDITOR) != null && !DumbService.isDumb(project)
+    }
+
+    override fun actionPerformed(e: AnActionEvent) {
+        val project = e.project ?: return
+        val editor = e.getData(CommonDataKeys.EDITOR) ?: return
+        val util = TargetElementUtil.getInstance()
+        val parameter = util.findTargetElement(editor,
+            TargetElementUtil.ELEMENT_NAME_ACCEPTED or TargetElementUtil.REFERENCED_ELEMENT_ACCEPTED)
+        if (parameter == null || !ArgumentSearch.isApplicable(parameter)) {
+            HintManager.getInstance().showErrorHint(editor, "No parameter at caret")
+            return
+        }
+        val scope = FindUsagesOptions.findScopeByName(project, e.dataContext, FindSettings.getInstance().defaultScopeName)
+        ArgumentSearch.start(project, JBPopupFactory.getInstance().guessBestPopupLocation(e.dataContext), parameter, scope)
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.volkov.znavi
+
+import com.github.volkov.znavi.callers.ZeroCallerReport
+import com.intellij.openapi.actionSystem.AnAction
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.actionSystem.LangDataKeys
+import com.intellij.openapi.project.DumbService
+import com.intellij.psi.search.GlobalSearchScope
+
+/**
+ * Reports methods without callers declared in the current module, or in the whole project if there is no module.
+ */
+class ZNaviZeroCallersAction : AnAction() {
+
+    override fun update(e: AnActionEvent) {
+        val project = e.project
+        e.presentation.isEnabled = project != null && !DumbService.isDumb(project)
+    }
+
+    override fun actionPerformed(e: AnActionEvent) {
+        val project = e.project ?: return
+        val module = e.getData(LangDataKeys.MODULE)
+        val scope = if (module != null) GlobalSearchScope.moduleScope(module) else GlobalSearchScope.projectScope(project)
+        ZeroCallerReport.getInstance(project).start(scope)
+    }
+}
@@ -0,0 +1,215 @@
+package com.github.volkov.znavi.callers
+
+import com.github.volkov.znavi.search.FastReferenceEngine
+import com.github.volkov.znavi.search.UsageOffset
+import com.intellij.concurrency.JobLauncher
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ProjectFileIndex
+import com.intellij.openapi.util.registry.Registry
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiMethod
+import org.jetbrains.kotlin.asJava.toLightMethods
+import org.jetbrains.kotlin.psi.KtNamedFunction
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+/**
+ * Step of a call path: [function] and the place in it which calls the next step, `null` for the last step.
+ */
+class CallPathStep(val function: PsiElement, val name: String, val callSite: UsageOffset?)
+
+/**
+ * Bidirectional breadth first search of a call path from [source] to [target].
+ *
+ * Callers of the backward frontier come from [CallerGraph] (including callers of super methods, as calls
+ * are resolved to the declared method), callees of the forward frontier are resolved from function bodies.
+ * The smaller frontier is expanded, all functions of a level in parallel. The first path found is reported
+ * at once, the shortest path of that level is reported when the level is finished.
+ * Search depth and time are limited by `znavi.callpath.depth` and `znavi.callpath.timeout.seconds` registry keys.
+ */
+class CallPathSearch(
+    private val project: Project,
+    private val source: PsiElement,
+    private val target: PsiElement,
+    private val onPath: (List<CallPathStep>) -> Unit
+) {
+
+    /**
+     * Link of a function found by the search: [next] is the function one step closer to where the search started,
+     * [callSite] is the call between them.
+     */
+    private class Link(val next: PsiElement, val callSite: UsageOffset)
+
+    private val graph = CallerGraph.getInstance(project)
+    private val forward = ConcurrentHashMap<PsiElement, Link>()
+    private val backward = ConcurrentHashMap<PsiElement, Link>()
+
+    enum class Outcome { FOUND, NOT_FOUND, DEPTH_EXCEEDED, TIMEOUT }
+
+    /**
+     * Caller requests of the backward search, the ones still running are cancelled when the search ends.
+     */
+    private val outstanding = ArrayList<CompletableFuture<List<Caller>>>()
+
+    /**
+     * Runs the search, should be called in background.
+     */
+    fun run(indicator: ProgressIndicator): Outcome {
+        try {
+            return search(indicator)
+        }
+        finally {
+            // other requests of the same callers keep their searches, see CallerGraph.callersAsync
+            outstanding.forEach { it.cancel(false) }
+            outstanding.clear()
+        }
+    }
+
+    private fun search(indicator: ProgressIndicator): Outcome {
+        val from = FastReferenceEngine.unwrap(source)
+        val to = FastReferenceEngine.unwrap(target)
+        if (from == to) {
+            onPath(ReadAction.compute<List<CallPathStep>, RuntimeException> { path(from) })
+            return Outcome.FOUND
+        }
+        val deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Registry.intValue("znavi.callpath.timeout.seconds", 30).toLong())
+        val maxDepth = Registry.intValue("znavi.callpath.depth", 12)
+        var forwardFrontier = listOf(from)
+        var backwardFrontier = listOf(to)
+        val forwardVisited = hashSetOf(from)
+        val backwardVisited = hashSetOf(to)
+
+        for (depth in 1..maxDepth) {
+            indicator.text2 = "Depth $depth, ${forwardVisited.size + backwardVisited.size} functions visited"
+            val meets = ArrayList<PsiElement>()
+            if (forwardFrontier.size <= backwardFrontier.size) {
+                val next = ArrayList<PsiElement>()
+                for ((function, callees) in expandForward(forwardFrontier, indicator)) {
+                    for (callee in callees) {
+                        if (!forwardVisited.add(callee.function)) continue
+                        forward[callee.function] = Link(function, callee.callSite)
+                        if (callee.function == to || callee.function in backwardVisited) {
+                            reportFirst(meets, callee.function)
+                        }
+                        else if (isInProject(callee.function)) {
+                            next.add(callee.function)
+                        }
+                    }
+                    if (System.currentTimeMillis() > deadline) return Outcome.TIMEOUT
+                }
+                forwardFrontier = next
+            }
+            else {
+                val next = ArrayList<PsiElement>()
+                for ((function, futures) in expandBackward(backwardFrontier)) {
+                    for (future in futures) {
+                        val callers = await(future, indicator, deadline) ?: return Outcome.TIMEOUT
+                        for (caller in callers) {
+                            val callerFunction = caller.function ?: continue
+                            if (!backwardVisited.add(callerFunction)) continue
+                            backward[callerFunction] = Link(function, caller.callSites.first())
+                            if (callerFunction == from || callerFunction in forwardVisited) {
+                                reportFirst(meets, callerFunction)
+                            }
+                            else {
+                                next.add(callerFunction)
+                            }
+                        }
+                    }
+                }
+                backwardFrontier = next
+            }
+            if (meets.isNotEmpty()) {
+                if (meets.size > 1) {
+                    onPath(ReadAction.compute<List<CallPathStep>, RuntimeException> { meets.map { path(it) }.minByOrNull { it.size }!! })
+                }
+                return Outcome.FOUND
+            }
+            if (forwardFrontier.isEmpty() || backwardFrontier.isEmpty()) return Outcome.NOT_FOUND
+            if (System.currentTimeMillis() > deadline) return Outcome.TIMEOUT
+        }
+        return Outcome.DEPTH_EXCEEDED
+    }
+
+    private fun reportFirst(meets: MutableList<PsiElement>, meet: PsiElement) {
+        meets.add(meet)
+        if (meets.size == 1) {
+            onPath(ReadAction.compute<List<CallPathStep>, RuntimeException> { path(meet) })
+        }
+    }
+
+    private fun expandForward(frontier: List<PsiElement>, indicator: ProgressIndicator): Map<PsiElement, List<Callee>> {
+        val result = ConcurrentHashMap<PsiElement, List<Callee>>()
+        JobLauncher.getInstance().invokeConcurrentlyUnderProgress(frontier, indicator) { function ->
+            ReadAction.run<RuntimeException> {
+                if (function.isValid) result[function] = graph.callees(function)
+            }
+            true
+        }
+        // keep the frontier order so that the search is deterministic
+        return frontier.filter { it in result }.associateWith { result.getValue(it) }
+    }
+
+    private fun expandBackward(frontier: List<PsiElement>): Map<PsiElement, List<CompletableFuture<List<Caller>>>> =
+        frontier.associateWith { function ->
+            val searched = ReadAction.compute<List<PsiElement>, RuntimeException> { listOf(function) + superMethods(function) }
+            searched.map { graph.callersAsync(it) }.also { outstanding.addAll(it) }
+        }
+
+    private fun superMethods(function: PsiElement): List<PsiElement> {
+        val methods = when (function) {
+            is PsiMethod -> listOf(function)
+            is KtNamedFunction -> function.toLightMethods()
+            else -> emptyList()
+        }
+        return methods.flatMap { it.findSuperMethods().toList() + it.findDeepestSuperMethods() }
+            .map { FastReferenceEngine.unwrap(it) }
+            .distinct()
+    }
+
+    private fun isInProject(function: PsiElement): Boolean = ReadAction.compute<Boolean, RuntimeException> {
+        val file = function.containingFile?.virtualFile
+        file != null && ProjectFileIndex.getInstance(project).isInContent(file)
+    }
+
+    private fun await(future: CompletableFuture<List<Caller>>, indicator: ProgressIndicator, deadline: Long): List<Caller>? {
+        while (System.currentTimeMillis() < deadline) {
+            indicator.checkCanceled()
+            try {
+                return future.get(AWAIT_STEP_MS, TimeUnit.MILLISECONDS)
+            } catch (e: TimeoutException) {
+                // check cancellation and deadline
+            }
+        }
+        return null
+    }
+
+    /**
+     * Path through [meet]: forward links lead from it back to the source, backward links lead from it to the target.
+     */
+    private fun path(meet: PsiElement): List<CallPathStep> {
+        val head = ArrayList<CallPathStep>()
+        var function = meet
+        while (true) {
+            val link = forward[function] ?: break
+            head.add(CallPathStep(link.next, CallerGraph.presentableName(link.next), link.callSite))
+            function = link.next
+        }
+        head.reverse()
+        function = meet
+        while (true) {
+            val link = backward[function]
+            head.add(CallPathStep(function, CallerGraph.presentableName(function), link?.callSite))
+            function = link?.next ?: break
+        }
+        return head
+    }
+
+    companion object {
+        private const val AWAIT_STEP_MS = 50L
+    }
+}
@@ -0,0 +1,280 @@
+package com.github.volkov.znavi.callers
+
+import com.github.volkov.znavi.diagnostics.NavigationStats
+import com.github.volkov.znavi.search.FastReferenceEngine
+import com.github.volkov.znavi.search.UsageOffset
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.components.service
+import com.intellij.openapi.progress.EmptyProgressIndicator
+import com.intellij.openapi.progress.ProcessCanceledException
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Computable
+import com.intellij.openapi.util.text.StringUtil
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiClass
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiFile
+import com.intellij.psi.PsiManager
+import com.intellij.psi.PsiMethod
+import com.intellij.psi.PsiMethodCallExpression
+import com.intellij.psi.PsiMethodReferenceExpression
+import com.intellij.psi.PsiNamedElement
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor
+import com.intellij.psi.PsiTreeChangeAdapter
+import com.intellij.psi.PsiTreeChangeEvent
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.psi.search.searches.ReferencesSearch
+import com.intellij.psi.util.PsiModificationTracker
+import com.intellij.psi.util.PsiTreeUtil
+import com.intellij.util.concurrency.AppExecutorUtil
+import org.jetbrains.kotlin.idea.references.mainReference
+import org.jetbrains.kotlin.psi.KtCallExpression
+import org.jetbrains.kotlin.psi.KtCallableReferenceExpression
+import org.jetbrains.kotlin.psi.KtClassOrObject
+import org.jetbrains.kotlin.psi.KtNamedFunction
+import org.jetbrains.kotlin.psi.KtReferenceExpression
+import org.jetbrains.kotlin.psi.psiUtil.containingClassOrObject
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Function calling the searched one, [function] is `null` for calls outside of functions (initializers, scripts).
+ */
+class Caller(val function: PsiElement?, val name: String, val callSites: List<UsageOffset>)
+
+/**
+ * Function called by the searched one, [callSite] is the first call in the caller body.
+ */
+class Callee(val function: PsiElement, val callSite: UsageOffset)
+
+/**
+ * Callers and callees of java methods and kotlin functions in the project, computed on demand and shared
+ * by all the features walking the call graph.
+ *
+ * Each function is searched at most once until it may have changed: concurrent requests share one search
+ * and the result is reused by later requests. Each request gets its own future, cancelling it detaches
+ * the request, the search itself is cancelled when every request of it is cancelled. Searches run on a bounded pool.
+ * Callees are resolved from the function body and cached the same way.
+ *
+ * Changes of java structure drop everything. Other PSI changes drop the callees of the functions in the changed
+ * files and the callers of the functions whose name the changed files contain or which have call sites there.
+ */
+@Service
+class CallerGraph(private val project: Project) : Disposable {
+
+    private val executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("ZNavi Callers", PARALLELISM)
+    private val cache = ConcurrentHashMap<PsiElement, Search>()
+    private val calleeCache = ConcurrentHashMap<PsiElement, List<Callee>>()
+    private val changedFiles = ConcurrentHashMap.newKeySet<PsiFile>()
+
+    @Volatile
+    private var cacheStamp = -1L
+
+    init {
+        PsiManager.getInstance(project).addPsiTreeChangeListener(object : PsiTreeChangeAdapter() {
+            override fun childrenChanged(event: PsiTreeChangeEvent) = changed(event)
+            override fun childAdded(event: PsiTreeChangeEvent) = changed(event)
+            override fun childRemoved(event: PsiTreeChangeEvent) = changed(event)
+            override fun childReplaced(event: PsiTreeChangeEvent) = changed(event)
+        }, this)
+    }
+
+    override fun dispose() {
+        cache.values.forEach { it.future.cancel(false) }
+    }
+
+    fun callersAsync(function: PsiElement): CompletableFuture<List<Caller>> {
+        checkStamp()
+        val key = FastReferenceEngine.unwrap(function)
+        val stats = NavigationStats.getInstance()
+        while (true) {
+            val cached = cache[key]
+            val search = cached ?: cache.computeIfAbsent(key) { start(it) }
+            // a search whose requests were all cancelled is replaced by a new one
+            val request = search.request()
+            if (request == null) {
+                cache.remove(key, search)
+                continue
+            }
+            if (cached != null) stats.cacheHit(NavigationStats.CALLER_GRAPH) else stats.cacheMiss(NavigationStats.CALLER_GRAPH)
+            return request
+        }
+    }
+
+    /**
+     * Functions called from the body of [function] in the order of the first call, should be called in read action.
+     */
+    fun callees(function: PsiElement): List<Callee> {
+        checkStamp()
+        val key = FastReferenceEngine.unwrap(function)
+        calleeCache[key]?.let { return it }
+        val file = key.containingFile?.virtualFile ?: return emptyList()
+        val result = LinkedHashMap<PsiElement, Callee>()
+        key.accept(object : PsiRecursiveElementWalkingVisitor() {
+            override fun visitElement(element: PsiElement) {
+                ProgressManager.checkCanceled()
+                val (reference, resolved) = when (element) {
+                    is PsiMethodCallExpression -> element.methodExpression.let { it to it.resolve() }
+                    is PsiMethodReferenceExpression -> element to element.resolve()
+                    is KtCallExpression -> (element.calleeExpression as? KtReferenceExpression).let { it to it?.mainReference?.resolve() }
+                    is KtCallableReferenceExpression -> element.callableReference.let { it to it.mainReference.resolve() }
+                    else -> null to null
+                }
+                val callee = resolved?.let { FastReferenceEngine.unwrap(it) }
+                if (reference != null && (callee is PsiMethod || callee is KtNamedFunction) && callee !in result) {
+                    result[callee] = Callee(callee, UsageOffset(file, reference.textRange.startOffset))
+                }
+                super.visitElement(element)
+            }
+        })
+        return result.values.toList().also { calleeCache[key] = it }
+    }
+
+    private fun changed(event: PsiTreeChangeEvent) {
+        event.file?.let { changedFiles.add(it) }
+    }
+
+    private fun checkStamp() {
+        val stamp = PsiModificationTracker.getInstance(project).javaStructureModificationCount
+        if (stamp != cacheStamp) {
+            cache.clear()
+            calleeCache.clear()
+            changedFiles.clear()
+            cacheStamp = stamp
+            return
+        }
+        if (changedFiles.isEmpty()) return
+        val files = changedFiles.toList()
+        changedFiles.removeAll(files)
+        ReadAction.run<RuntimeException> {
+            for (file in files) {
+                val virtualFile = file.virtualFile
+                val text = if (file.isValid) file.viewProvider.contents else ""
+                calleeCache.keys.removeIf { !it.isValid || it.containingFile == file }
+                cache.keys.removeIf { function ->
+                    val name = (function as? PsiNamedElement)?.name
+                    !function.isValid || name == null || StringUtil.contains(text, name) || cache[function]?.hasCallSiteIn(virtualFile) == true
+                }
+            }
+        }
+    }
+
+    private fun start(function: PsiElement): Search {
+        val indicator = EmptyProgressIndicator()
+        val future = CompletableFuture<List<Caller>>()
+        val search = Search(future)
+        future.whenComplete { _, _ ->
+            if (future.isCancelled) {
+                indicator.cancel()
+                cache.remove(function, search)
+            }
+        }
+        executor.execute {
+            try {
+                future.complete(ProgressManager.getInstance().runProcess(Computable { callers(function, indicator) }, indicator))
+            } catch (e: ProcessCanceledException) {
+                future.cancel(false)
+            } catch (e: Throwable) {
+                future.completeExceptionally(e)
+                cache.remove(function, search)
+            }
+        }
+        return search
+    }
+
+    /**
+     * Callers of [function] grouped by the calling function, should be called in background.
+     */
+    fun callers(function: PsiElement, indicator: ProgressIndicator): List<Caller> {
+        val scope = GlobalSearchScope.projectScope(project)
+        val callSites = CallerSearch.findCallers(function, scope, indicator) ?: referenceSites(function, scope)
+        return ReadAction.compute<List<Caller>, RuntimeException> {
+            val psiManager = PsiManager.getInstance(project)
+            val grouped = LinkedHashMap<PsiElement, MutableList<UsageOffset>>()
+            for (site in callSites) {
+                indicator.checkCanceled()
+                val psiFile = psiManager.findFile(site.file) ?: continue
+                val container = containingDeclaration(psiFile, site.offset)
+                grouped.getOrPut(container) { ArrayList() }.add(site)
+            }
+            grouped.map { (container, sites) ->
+                val isFunction = container is PsiMethod || container is KtNamedFunction
+                Caller(if (isFunction) container else null, presentableName(container), sites)
+            }
+        }
+    }
+
+    private fun referenceSites(function: PsiElement, scope: GlobalSearchScope): List<UsageOffset> {
+        val result = ArrayList<UsageOffset>()
+        ReferencesSearch.search(function, scope).forEach { reference ->
+            ReadAction.run<RuntimeException> {
+                val element = reference.element
+                val file = element.containingFile?.virtualFile
+                if (file != null) {
+                    result.add(UsageOffset(file, element.textRange.startOffset + reference.rangeInElement.startOffset))
+                }
+            }
+        }
+        return result.sortedWith(UsageOffset.ORDER)
+    }
+
+    private fun containingDeclaration(psiFile: PsiFile, offset: Int): PsiElement {
+        val element = psiFile.findElementAt(offset) ?: return psiFile
+        return PsiTreeUtil.getParentOfType(element, PsiMethod::class.java, KtNamedFunction::class.java)
+            ?: PsiTreeUtil.getParentOfType(element, PsiClass::class.java, KtClassOrObject::class.java)
+            ?: psiFile
+    }
+
+    /**
+     * Search shared by the requests of the same function, counts the requests which are not cancelled.
+     */
+    private class Search(val future: CompletableFuture<List<Caller>>) {
+        private val requests = AtomicInteger()
+
+        /**
+         * Future of a new request or `null` if the search is already cancelled.
+         */
+        fun request(): CompletableFuture<List<Caller>>? {
+            if (requests.getAndUpdate { if (it < 0) it else it + 1 } < 0 || future.isCancelled) return null
+            val request = future.thenApply { it }
+            request.whenComplete { _, _ ->
+                if (request.isCancelled && requests.updateAndGet { if (it == 1) CANCELLED else it - 1 } == CANCELLED) {
+                    future.cancel(false)
+                }
+            }
+            return request
+        }
+
+        fun hasCallSiteIn(file: VirtualFile?): Boolean {
+            if (!future.isDone || future.isCompletedExceptionally) return false
+            return future.join().any { caller -> caller.callSites.any { it.file == file } }
+        }
+
+        companion object {
+            private const val CANCELLED = -1
+        }
+    }
+
+    companion object {
+        private val PARALLELISM = (Runtime.getRuntime().availableProcessors() - 1).coerceIn(1, 4)
+
+        @JvmStatic
+        fun getInstance(project: Project): CallerGraph = project.service()
+
+        /**
+         * `Class.method` for functions, own name for other declarations, should be called in read action.
+         */
+        @JvmStatic
+        fun presentableName(element: PsiElement): String = when (element) {
+            is PsiMethod -> listOfNotNull(element.containingClass?.name, element.name).joinToString(".")
+            is KtNamedFunction -> listOfNotNull(element.containingClassOrObject?.name, element.name).joinToString(".")
+            is PsiNamedElement -> element.name ?: element.toString()
+            else -> element.toString()
+        }
+    }
+}
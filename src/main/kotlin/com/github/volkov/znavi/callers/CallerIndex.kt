@@ -0,0 +1,115 @@
+package com.github.volkov.znavi.callers
+
+import com.intellij.ide.highlighter.JavaFileType
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiMethodCallExpression
+import com.intellij.psi.PsiMethodReferenceExpression
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor
+import com.intellij.util.indexing.DataIndexer
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter
+import com.intellij.util.indexing.FileBasedIndex
+import com.intellij.util.indexing.FileBasedIndexExtension
+import com.intellij.util.indexing.FileContent
+import com.intellij.util.indexing.ID
+import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.DataInputOutputUtil
+import com.intellij.util.io.EnumeratorStringDescriptor
+import com.intellij.util.io.KeyDescriptor
+import org.jetbrains.kotlin.idea.KotlinFileType
+import org.jetbrains.kotlin.lexer.KtTokens
+import org.jetbrains.kotlin.psi.KtBinaryExpression
+import org.jetbrains.kotlin.psi.KtCallExpression
+import org.jetbrains.kotlin.psi.KtCallableReferenceExpression
+import org.jetbrains.kotlin.psi.KtNameReferenceExpression
+import java.io.DataInput
+import java.io.DataOutput
+
+/**
+ * Call sites of methods and functions by name in java and kotlin files.
+ *
+ * Value is a packed array of `(offset, argument count)` pairs, where offset is the start of the called name
+ * and argument count is [ANY_ARITY] for method references. Offsets are stored delta encoded as var ints.
+ */
+class CallerIndex : FileBasedIndexExtension<String, IntArray>() {
+
+    override fun getName(): ID<String, IntArray> = NAME
+
+    override fun getIndexer(): DataIndexer<String, IntArray, FileContent> = DataIndexer { inputData ->
+        val calls = HashMap<String, MutableList<Int>>()
+        fun add(name: String?, nameElement: PsiElement?, arguments: Int) {
+            if (name == null || nameElement == null) return
+            calls.getOrPut(name) { ArrayList() }.apply {
+                add(nameElement.textRange.startOffset)
+                add(arguments)
+            }
+        }
+        inputData.psiFile.accept(object : PsiRecursiveElementWalkingVisitor() {
+            override fun visitElement(element: PsiElement) {
+                when (element) {
+                    is PsiMethodCallExpression -> element.methodExpression.let {
+                        add(it.referenceName, it.referenceNameElement, element.argumentList.expressionCount)
+                    }
+                    is PsiMethodReferenceExpression -> add(element.referenceName, element.referenceNameElement, ANY_ARITY)
+                    is KtCallExpression -> (element.calleeExpression as? KtNameReferenceExpression)?.let {
+                        add(it.getReferencedName(), it, element.valueArguments.size)
+                    }
+                    is KtCallableReferenceExpression -> element.callableReference.let {
+                        add(it.getReferencedName(), it, ANY_ARITY)
+                    }
+                    is KtBinaryExpression -> element.operationReference.let {
+                        if (it.getReferencedNameElementType() == KtTokens.IDENTIFIER) add(it.getReferencedName(), it, 1)
+                    }
+                }
+                super.visitElement(element)
+            }
+        })
+        calls.mapValues { sortByOffset(it.value) }
+    }
+
+    private fun sortByOffset(packed: List<Int>): IntArray {
+        val pairs = (packed.indices step 2).map { packed[it] to packed[it + 1] }.sortedBy { it.first }
+        return IntArray(pairs.size * 2) { if (it % 2 == 0) pairs[it / 2].first else pairs[it / 2].second }
+    }
+
+    override fun getKeyDescriptor(): KeyDescriptor<String> = EnumeratorStringDescriptor.INSTANCE
+
+    override fun getValueExternalizer(): DataExternalizer<IntArray> = CallSitesExternalizer
+
+    override fun getVersion(): Int = 1
+
+    override fun getInputFilter(): FileBasedIndex.InputFilter =
+        DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE, KotlinFileType.INSTANCE)
+
+    override fun dependsOnFileContent(): Boolean = true
+
+    private object CallSitesExternalizer : DataExternalizer<IntArray> {
+        override fun save(out: DataOutput, value: IntArray) {
+            DataInputOutputUtil.writeINT(out, value.size / 2)
+            var previous = 0
+            for (i in value.indices step 2) {
+                DataInputOutputUtil.writeINT(out, value[i] - previous)
+                DataInputOutputUtil.writeINT(out, value[i + 1] + 1)
+                previous = value[i]
+            }
+        }
+
+        override fun read(input: DataInput): IntArray {
+            val count = DataInputOutputUtil.readINT(input)
+            val result = IntArray(count * 2)
+            var previous = 0
+            for (i in 0 until count) {
+                previous += DataInputOutputUtil.readINT(input)
+                result[i * 2] = previous
+                result[i * 2 + 1] = DataInputOutputUtil.readINT(input) - 1
+            }
+            return result
+        }
+    }
+
+    companion object {
+        @JvmField
+        val NAME: ID<String, IntArray> = ID.create("znavi.callers")
+
+        const val ANY_ARITY = -1
+    }
+}
@@ -0,0 +1,189 @@
+package com.github.volkov.znavi.callers
+
+import com.github.volkov.znavi.diagnostics.LatencyMeasurement
+import com.github.volkov.znavi.diagnostics.NavigationStats
+import com.github.volkov.znavi.search.FastReferenceEngine
+import com.github.volkov.znavi.search.UsageOffset
+import com.github.volkov.znavi.search.UsageOffsetNavigator
+import com.github.volkov.znavi.ui.UsageOffsetPopup
+import com.github.volkov.znavi.ui.UsageOffsetRow
+import com.intellij.codeInsight.hint.HintManager
+import com.intellij.concurrency.JobLauncher
+import com.intellij.ide.highlighter.JavaFileType
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.editor.Editor
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.progress.Task
+import com.intellij.openapi.project.IndexNotReadyException
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiManager
+import com.intellij.psi.PsiMethod
+import com.intellij.psi.PsiNamedElement
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.psi.search.PsiShortNamesCache
+import com.intellij.ui.awt.RelativePoint
+import com.intellij.usageView.UsageViewBundle
+import com.intellij.util.indexing.FileBasedIndex
+import org.jetbrains.kotlin.psi.KtNamedFunction
+import java.util.Collections
+
+/**
+ * Callers of a java method or kotlin function read from [CallerIndex] instead of the full reference search.
+ *
+ * Call sites are filtered by argument count. If the name is declared only once in the project and libraries
+ * every remaining call site in a java file is a caller, other call sites are resolved, in parallel by file.
+ * Calls which don't contain the name (accessors used as properties, operators, calls through overridden methods)
+ * are found only by the full search, which the popup offers as a link.
+ */
+object CallerSearch {
+
+    /**
+     * Cheap check which can be done in EDT, [findCallers] can still refuse the target.
+     */
+    @JvmStatic
+    fun isApplicable(target: PsiElement): Boolean {
+        val element = FastReferenceEngine.unwrap(target)
+        return element is PsiMethod && !element.isConstructor || element is KtNamedFunction && element.name != null
+    }
+
+    @JvmStatic
+    @JvmOverloads
+    fun start(project: Project, editor: Editor?, popupPosition: RelativePoint, target: PsiElement,
+              scope: GlobalSearchScope, fullSearch: Runnable, latency: LatencyMeasurement? = null) {
+        PsiDocumentManager.getInstance(project).commitAllDocuments()
+        val title = "Callers of ${(target as? PsiNamedElement)?.name}"
+        object : Task.Backgroundable(project, UsageViewBundle.message("progress.searching"), true) {
+            private var callers: List<UsageOffset>? = null
+            private var rows: List<UsageOffsetRow> = emptyList()
+
+            override fun run(indicator: ProgressIndicator) {
+                callers = try {
+                    findCallers(target, scope, indicator)
+                } catch (e: IndexNotReadyException) {
+                    null
+                }
+                val found = callers
+                if (found != null && found.size > 1) {
+                    rows = found.map { UsageOffsetRow.create(it, null) }
+                }
+            }
+
+            override fun onSuccess() {
+                val found = callers
+                val stats = NavigationStats.getInstance()
+                if (found != null) stats.cacheHit(NavigationStats.CALLER_INDEX) else stats.cacheMiss(NavigationStats.CALLER_INDEX)
+                when {
+                    found == null -> fullSearch.run()
+                    found.isEmpty() -> if (editor != null) {
+                        HintManager.getInstance().showInformationHint(editor, UsageViewBundle.message("no.usages.found.in", scope.displayName))
+                    }
+                    found.size == 1 -> UsageOffsetNavigator.navigateAndHint(project, found[0],
+                        UsageViewBundle.message("show.usages.only.usage", scope.displayName))
+                    else -> {
+                        val popup = UsageOffsetPopup(project, title, emptyList(), fullSearch)
+                        rows.forEach { popup.add(it) }
+                        popup.finish()
+                        popup.show(popupPosition)
+                    }
+                }
+                latency?.finish(found?.size ?: 0, false)
+            }
+
+            override fun onCancel() {
+                latency?.finish(0, true)
+            }
+        }.queue()
+    }
+
+    /**
+     * Sorted call sites of [target] or `null` if the index can't answer, should be called in background.
+     */
+    @JvmStatic
+    fun findCallers(target: PsiElement, scope: GlobalSearchScope, indicator: ProgressIndicator): List<UsageOffset>? {
+        val query = ReadAction.compute<Query?, RuntimeException> { if (target.isValid) createQuery(target) else null }
+            ?: return null
+
+        val callSites = LinkedHashMap<VirtualFile, MutableList<Int>>()
+        ReadAction.run<RuntimeException> {
+            FileBasedIndex.getInstance().processValues(CallerIndex.NAME, query.name, null, { file, value ->
+                for (i in value.indices step 2) {
+                    if (query.accepts(value[i + 1])) {
+                        callSites.getOrPut(file) { ArrayList() }.add(value[i])
+                    }
+                }
+                true
+            }, scope)
+        }
+        indicator.checkCanceled()
+
+        val result = Collections.synchronizedList(ArrayList<UsageOffset>())
+        val unresolved = ArrayList<VirtualFile>()
+        for ((file, offsets) in callSites) {
+            // a java call by name can only call a method, kotlin ones can call local functions and function typed
+            // properties and parameters which short names cache doesn't know about
+            if (query.unique && file.fileType == JavaFileType.INSTANCE) {
+                offsets.mapTo(result) { UsageOffset(file, it) }
+            } else {
+                unresolved.add(file)
+            }
+        }
+        JobLauncher.getInstance().invokeConcurrentlyUnderProgress(unresolved, indicator) { file ->
+            ReadAction.run<RuntimeException> {
+                val psiFile = PsiManager.getInstance(query.project).findFile(file) ?: return@run
+                for (offset in callSites.getValue(file)) {
+                    val reference = psiFile.viewProvider.findReferenceAt(offset) ?: continue
+                    if (query.targets.any { reference.isReferenceTo(it) }) {
+                        result.add(UsageOffset(file, offset))
+                    }
+                }
+            }
+            true
+        }
+        return result.sortedWith(UsageOffset.ORDER)
+    }
+
+    private fun createQuery(target: PsiElement): Query? {
+        val targets = FastReferenceEngine.referenceTargets(target) ?: return null
+        val project = target.project
+        return when (val element = FastReferenceEngine.unwrap(target)) {
+            is PsiMethod -> {
+                val count = element.parameterList.parametersCount
+                val min = if (element.isVarArgs) count - 1 else count
+                Query(project, element.name, targets, min, if (element.isVarArgs) Int.MAX_VALUE else count,
+                    isUnique(project, element.name, element))
+            }
+            is KtNamedFunction -> {
+                val name = element.name ?: return null
+                val parameters = element.valueParameters
+                val min = parameters.count { !it.hasDefaultValue() && !it.isVarArg }
+                // java passes the extension receiver as the first argument
+                val receiver = if (element.receiverTypeReference != null) 1 else 0
+                val max = if (parameters.any { it.isVarArg }) Int.MAX_VALUE else parameters.size + receiver
+                Query(project, name, targets, min, max, isUnique(project, name, element))
+            }
+            else -> null
+        }
+    }
+
+    private fun isUnique(project: Project, name: String, declaration: PsiElement): Boolean {
+        val declarations = PsiShortNamesCache.getInstance(project)
+            .getMethodsByName(name, GlobalSearchScope.allScope(project))
+            .map { FastReferenceEngine.unwrap(it) }
+            .distinct()
+        return declarations.size == 1 && declarations[0] == declaration
+    }
+
+    private class Query(
+        val project: Project,
+        val name: String,
+        val targets: List<PsiElement>,
+        private val minArguments: Int,
+        private val maxArguments: Int,
+        val unique: Boolean
+    ) {
+        fun accepts(arguments: Int): Boolean = arguments == CallerIndex.ANY_ARITY || arguments in minArguments..maxArguments
+    }
+}
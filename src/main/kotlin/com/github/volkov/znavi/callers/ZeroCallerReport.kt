@@ -0,0 +1,192 @@
+package com.github.volkov.znavi.callers
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.components.service
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.progress.impl.BackgroundableProcessIndicator
+import com.intellij.openapi.progress.Task
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Disposer
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiManager
+import com.intellij.psi.PsiNameIdentifierOwner
+import com.intellij.psi.PsiNamedElement
+import com.intellij.psi.PsiTreeChangeAdapter
+import com.intellij.psi.PsiTreeChangeEvent
+import com.intellij.psi.SmartPointerManager
+import com.intellij.psi.SmartPsiElementPointer
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.usageView.UsageInfo
+import com.intellij.usages.Usage
+import com.intellij.usages.UsageInfo2UsageAdapter
+import com.intellij.usages.UsageTarget
+import com.intellij.usages.UsageView
+import com.intellij.usages.UsageViewManager
+import com.intellij.usages.UsageViewPresentation
+import com.intellij.util.indexing.FileBasedIndex
+import com.intellij.util.ui.update.MergingUpdateQueue
+import com.intellij.util.ui.update.Update
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Report of methods without callers shown in the find tool window, so Next/Previous Occurrence walk over it.
+ *
+ * While the report is open it is updated incrementally: after PSI changes the reported methods called by name
+ * from the changed files (see [CallerIndex]) and the methods of the changed files are checked again, a newer update
+ * cancels the running one and takes over its files. A method losing its last caller is found when its own file changes
+ * or by the next full report, the same for the reported methods gaining a caller not by name (accessors used as properties).
+ */
+@Service
+class ZeroCallerReport(private val project: Project) {
+
+    private var view: UsageView? = null
+    private var scope: GlobalSearchScope? = null
+    private val reported = LinkedHashMap<SmartPsiElementPointer<PsiElement>, Usage>()
+    private val changedFiles = ConcurrentHashMap.newKeySet<VirtualFile>()
+    private var updateQueue: MergingUpdateQueue? = null
+    private var running: ProgressIndicator? = null
+    private val runningFiles = ArrayList<VirtualFile>()
+
+    /**
+     * Starts a new report for the methods declared in [scope], should be called in EDT.
+     */
+    fun start(scope: GlobalSearchScope) {
+        object : Task.Backgroundable(project, "Searching methods without callers", true) {
+            private var found: List<PsiElement> = emptyList()
+
+            override fun run(indicator: ProgressIndicator) {
+                indicator.isIndeterminate = false
+                val files = ReadAction.compute<List<VirtualFile>, RuntimeException> { ZeroCallerSearch.files(scope) }
+                val methods = files.flatMap { file ->
+                    indicator.checkCanceled()
+                    ReadAction.compute<List<PsiElement>, RuntimeException> { ZeroCallerSearch.candidates(project, file) }
+                }
+                found = ZeroCallerSearch.find(methods, GlobalSearchScope.projectScope(project), indicator)
+            }
+
+            override fun onSuccess() = show(scope, found)
+        }.queue()
+    }
+
+    private fun show(scope: GlobalSearchScope, methods: List<PsiElement>) {
+        val presentation = UsageViewPresentation().apply {
+            tabText = "Methods without callers"
+            codeUsagesString = "Methods without callers in ${scope.displayName}"
+            isOpenInNewTab = false
+        }
+        reported.clear()
+        val usages = methods.filter { it.isValid }.map { method -> usage(method).also { reported[pointer(method)] = it } }
+        val usageView = UsageViewManager.getInstance(project).showUsages(UsageTarget.EMPTY_ARRAY, usages.toTypedArray(), presentation)
+        this.view = usageView
+        this.scope = scope
+        val queue = MergingUpdateQueue("ZNavi zero callers", UPDATE_DELAY_MS, true, null, usageView)
+        updateQueue = queue
+        PsiManager.getInstance(project).addPsiTreeChangeListener(object : PsiTreeChangeAdapter() {
+            override fun childrenChanged(event: PsiTreeChangeEvent) = changed(event)
+            override fun childAdded(event: PsiTreeChangeEvent) = changed(event)
+            override fun childRemoved(event: PsiTreeChangeEvent) = changed(event)
+            override fun childReplaced(event: PsiTreeChangeEvent) = changed(event)
+        }, usageView)
+        Disposer.register(usageView, Disposable {
+            if (view == usageView) {
+                view = null
+                updateQueue = null
+                reported.clear()
+                changedFiles.clear()
+                running?.cancel()
+            }
+        })
+    }
+
+    private fun changed(event: PsiTreeChangeEvent) {
+        val file = event.file?.virtualFile ?: return
+        changedFiles.add(file)
+        updateQueue?.queue(Update.create(this) { update() })
+    }
+
+    private fun update() {
+        val usageView = view ?: return
+        val reportScope = scope ?: return
+        val files = LinkedHashSet(changedFiles)
+        changedFiles.removeAll(files)
+        // the running update is outdated, its files are checked by this one
+        running?.let {
+            it.cancel()
+            files.addAll(runningFiles)
+        }
+        runningFiles.clear()
+        runningFiles.addAll(files)
+        val pointers = reported.keys.toList()
+        var taskIndicator: ProgressIndicator? = null
+        val task = object : Task.Backgroundable(project, "Updating methods without callers", true) {
+            private val stillDead = ArrayList<SmartPsiElementPointer<PsiElement>>()
+            private var newDead: List<PsiElement> = emptyList()
+
+            override fun run(indicator: ProgressIndicator) {
+                val callersScope = GlobalSearchScope.projectScope(project)
+                val changedScope = GlobalSearchScope.filesScope(project, files.filter { it.isValid })
+                val reportedElements = ReadAction.compute<Set<PsiElement>, RuntimeException> { pointers.mapNotNull { it.element }.toSet() }
+                for (pointer in pointers) {
+                    indicator.checkCanceled()
+                    val element = ReadAction.compute<PsiElement?, RuntimeException> { pointer.element } ?: continue
+                    if (!isCalledByName(element, changedScope) || ZeroCallerSearch.hasNoCallers(element, callersScope, indicator)) {
+                        stillDead.add(pointer)
+                    }
+                }
+                val candidates = files.filter { it.isValid && reportScope.contains(it) }.flatMap { file ->
+                    ReadAction.compute<List<PsiElement>, RuntimeException> { ZeroCallerSearch.candidates(project, file) }
+                }.filter { it !in reportedElements }
+                newDead = ZeroCallerSearch.find(candidates, callersScope, indicator)
+            }
+
+            override fun onSuccess() {
+                if (view != usageView) return
+                val removed = pointers.filter { it !in stillDead }.mapNotNull { reported.remove(it) }
+                if (removed.isNotEmpty()) usageView.removeUsagesBulk(removed)
+                for (method in newDead) {
+                    if (!method.isValid || reported.keys.any { it.element == method }) continue
+                    val usage = usage(method)
+                    reported[pointer(method)] = usage
+                    usageView.appendUsage(usage)
+                }
+            }
+
+            override fun onFinished() {
+                if (running === taskIndicator) {
+                    running = null
+                    runningFiles.clear()
+                }
+            }
+        }
+        val indicator = BackgroundableProcessIndicator(task)
+        taskIndicator = indicator
+        running = indicator
+        ProgressManager.getInstance().runProcessWithProgressAsynchronously(task, indicator)
+    }
+
+    /**
+     * Whether [method] is called by name from [changedScope], only such methods may have got a caller.
+     */
+    private fun isCalledByName(method: PsiElement, changedScope: GlobalSearchScope): Boolean =
+        ReadAction.compute<Boolean, RuntimeException> {
+            val name = (method as? PsiNamedElement)?.name
+            name == null || !FileBasedIndex.getInstance().processValues(CallerIndex.NAME, name, null, { _, _ -> false }, changedScope)
+        }
+
+    private fun usage(method: PsiElement): Usage =
+        UsageInfo2UsageAdapter(UsageInfo((method as? PsiNameIdentifierOwner)?.nameIdentifier ?: method))
+
+    private fun pointer(method: PsiElement): SmartPsiElementPointer<PsiElement> =
+        SmartPointerManager.getInstance(project).createSmartPsiElementPointer(method)
+
+    companion object {
+        private const val UPDATE_DELAY_MS = 1000
+
+        @JvmStatic
+        fun getInstance(project: Project): ZeroCallerReport = project.service()
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.volkov.znavi.callers
+
+import com.intellij.concurrency.JobLauncher
+import com.intellij.ide.highlighter.JavaFileType
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiManager
+import com.intellij.psi.PsiMethod
+import com.intellij.psi.search.FileTypeIndex
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.psi.search.searches.ReferencesSearch
+import com.intellij.psi.util.PsiTreeUtil
+import org.jetbrains.kotlin.idea.KotlinFileType
+import org.jetbrains.kotlin.lexer.KtTokens
+import org.jetbrains.kotlin.psi.KtNamedFunction
+import java.util.Collections
+
+/**
+ * Finds java methods and kotlin functions which are never called in the project.
+ *
+ * Candidates are lookup-able declarations which are not entry points: constructors, `main`, overriding
+ * and annotated (framework called) methods are skipped. Callers are read from [CallerIndex], a method without indexed
+ * calls is confirmed with the full reference search, as it can still be referenced without a call.
+ */
+object ZeroCallerSearch {
+
+    private const val BATCH_SIZE = 200
+
+    /**
+     * Java and kotlin files of [scope], should be called in read action.
+     */
+    @JvmStatic
+    fun files(scope: GlobalSearchScope): List<VirtualFile> =
+        FileTypeIndex.getFiles(JavaFileType.INSTANCE, scope) + FileTypeIndex.getFiles(KotlinFileType.INSTANCE, scope)
+
+    /**
+     * Candidate methods declared in [file], should be called in read action.
+     */
+    @JvmStatic
+    fun candidates(project: Project, file: VirtualFile): List<PsiElement> {
+        val psiFile = PsiManager.getInstance(project).findFile(file) ?: return emptyList()
+        return PsiTreeUtil.findChildrenOfAnyType(psiFile, PsiMethod::class.java, KtNamedFunction::class.java)
+            .filter { isCandidate(it) }
+    }
+
+    /**
+     * Methods without callers in [callersScope] among [methods], checked in parallel batches.
+     */
+    @JvmStatic
+    fun find(methods: List<PsiElement>, callersScope: GlobalSearchScope, indicator: ProgressIndicator): List<PsiElement> {
+        val result = Collections.synchronizedList(ArrayList<PsiElement>())
+        var done = 0
+        for (batch in methods.chunked(BATCH_SIZE)) {
+            indicator.checkCanceled()
+            JobLauncher.getInstance().invokeConcurrentlyUnderProgress(batch, indicator) { method ->
+                if (hasNoCallers(method, callersScope, indicator)) result.add(method)
+                true
+            }
+            done += batch.size
+            indicator.fraction = done.toDouble() / methods.size
+            indicator.text2 = "$done of ${methods.size} methods checked, ${result.size} without callers"
+        }
+        return result
+    }
+
+    @JvmStatic
+    fun hasNoCallers(method: PsiElement, scope: GlobalSearchScope, indicator: ProgressIndicator): Boolean {
+        if (!ReadAction.compute<Boolean, RuntimeException> { method.isValid }) return false
+        val callers = CallerSearch.findCallers(method, scope, indicator)
+        if (callers != null && callers.isNotEmpty()) return false
+        return ReferencesSearch.search(method, scope).findFirst() == null
+    }
+
+    private fun isCandidate(element: PsiElement): Boolean = when (element) {
+        is PsiMethod -> !element.isConstructor
+                && element.name != "main"
+                && element.containingClass != null
+                && element.modifierList.annotations.isEmpty()
+                && element.findSuperMethods().isEmpty()
+        is KtNamedFunction -> !element.isLocal
+                && element.name != null
+                && element.name != "main"
+                && element.annotationEntries.isEmpty()
+                && !element.hasModifier(KtTokens.OVERRIDE_KEYWORD)
+                && !element.hasModifier(KtTokens.OPERATOR_KEYWORD)
+        else -> false
+    }
+}
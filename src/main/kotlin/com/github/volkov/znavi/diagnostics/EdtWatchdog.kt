@@ -0,0 +1,144 @@
+package com.github.volkov.znavi.diagnostics
+
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.components.service
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.util.registry.Registry
+import com.intellij.util.concurrency.AppExecutorUtil
+import java.text.SimpleDateFormat
+import java.util.ArrayDeque
+import java.util.Date
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * EDT stall caught by [EdtWatchdog]: [section] blocked the EDT for [durationMs], [culprit] is the plugin frame found
+ * on top of most of the [samples] stacks, [stack] is one of those stacks cut below the culprit.
+ */
+class StallReport(
+    val timestamp: Long,
+    val section: String,
+    val durationMs: Long,
+    val samples: Int,
+    val culprit: String,
+    val culpritSamples: Int,
+    val stack: List<String>
+) {
+    override fun toString(): String = buildString {
+        append(SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(Date(timestamp)))
+        append("  ").append(section).append("  ").append(durationMs).append(" ms, ").append(samples).append(" samples\n")
+        append("  culprit: ").append(culprit).append(" (").append(culpritSamples).append('/').append(samples).append(")\n")
+        stack.forEach { append("    at ").append(it).append('\n') }
+    }
+}
+
+/**
+ * Watches the EDT while ZNavi code runs in it: actions, popup updates and search completion callbacks are wrapped
+ * in [enter]/[exit] sections. When a section runs longer than `znavi.edt.stall.ms` the EDT stack is sampled
+ * every [SAMPLE_MS] until the section exits, then a compact [StallReport] naming the plugin frame on top of most
+ * samples is kept in a ring buffer of the last [MAX_REPORTS] stalls.
+ *
+ * Sections are entered and exited in the EDT only, the sampler runs on the shared scheduled executor
+ * and only while a section is open, the report is built on a pooled thread.
+ */
+@Service
+class EdtWatchdog {
+
+    private var depth = 0
+    private var sampler: ScheduledFuture<*>? = null
+
+    @Volatile
+    private var section: String? = null
+
+    @Volatile
+    private var sectionStart = 0L
+
+    @Volatile
+    private var edt: Thread? = null
+    private val samples = ArrayList<Array<StackTraceElement>>()
+    private val reports = ArrayDeque<StallReport>()
+    private val ownClasses = ConcurrentHashMap<String, Boolean>()
+
+    /**
+     * Opens a watched section, nested sections are attributed to the outermost one.
+     */
+    fun enter(name: String) {
+        if (!ApplicationManager.getApplication().isDispatchThread || !Registry.`is`("znavi.edt.watchdog")) return
+        if (depth++ > 0) return
+        edt = Thread.currentThread()
+        section = name
+        sectionStart = System.nanoTime()
+        synchronized(samples) { samples.clear() }
+        val threshold = Registry.intValue("znavi.edt.stall.ms", 300).toLong()
+        sampler = AppExecutorUtil.getAppScheduledExecutorService()
+            .scheduleWithFixedDelay({ sample() }, threshold, SAMPLE_MS, TimeUnit.MILLISECONDS)
+    }
+
+    fun exit() {
+        if (depth == 0 || !ApplicationManager.getApplication().isDispatchThread) return
+        if (--depth > 0) return
+        sampler?.cancel(false)
+        sampler = null
+        val durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sectionStart)
+        val name = section ?: return
+        section = null
+        val collected = synchronized(samples) { ArrayList(samples).also { samples.clear() } }
+        if (collected.isNotEmpty()) {
+            // class lookups of the frames would stall the EDT again
+            AppExecutorUtil.getAppExecutorService().execute { report(name, durationMs, collected) }
+        }
+    }
+
+    fun reports(): List<StallReport> = synchronized(reports) { ArrayList(reports) }
+
+    private fun sample() {
+        val thread = edt ?: return
+        if (section == null) return
+        val stack = thread.stackTrace
+        synchronized(samples) {
+            if (samples.size < MAX_SAMPLES) samples.add(stack)
+        }
+    }
+
+    private fun report(name: String, durationMs: Long, collected: List<Array<StackTraceElement>>) {
+        val tops = collected.map { stack -> stack.indexOfFirst { isOwn(it) } }
+        val culprits = collected.indices.filter { tops[it] >= 0 }.groupBy { collected[it][tops[it]].toString() }
+        val (culprit, indices) = culprits.maxByOrNull { it.value.size }?.toPair() ?: ("<no plugin frame>" to listOf(0))
+        val stackIndex = indices[0]
+        val stack = collected[stackIndex].let { frames ->
+            val end = if (tops[stackIndex] >= 0) tops[stackIndex] + CONTEXT_FRAMES else MAX_FRAMES
+            frames.take(end.coerceAtMost(MAX_FRAMES)).map { it.toString() }
+        }
+        val stall = StallReport(System.currentTimeMillis(), name, durationMs, collected.size, culprit,
+            if (tops[stackIndex] >= 0) indices.size else 0, stack)
+        LOG.warn("EDT stall in ZNavi\n$stall")
+        synchronized(reports) {
+            if (reports.size == MAX_REPORTS) reports.removeFirst()
+            reports.addLast(stall)
+        }
+    }
+
+    private fun isOwn(frame: StackTraceElement): Boolean = ownClasses.computeIfAbsent(frame.className) { name ->
+        val loader = EdtWatchdog::class.java.classLoader
+        try {
+            Class.forName(name, false, loader).classLoader === loader
+        } catch (e: Throwable) {
+            false
+        }
+    }
+
+    companion object {
+        private val LOG = Logger.getInstance(EdtWatchdog::class.java)
+
+        private const val SAMPLE_MS = 50L
+        private const val MAX_SAMPLES = 200
+        private const val MAX_REPORTS = 20
+        private const val MAX_FRAMES = 25
+        private const val CONTEXT_FRAMES = 8
+
+        @JvmStatic
+        fun getInstance(): EdtWatchdog = service()
+    }
+}
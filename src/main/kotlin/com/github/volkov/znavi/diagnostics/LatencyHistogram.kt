@@ -0,0 +1,85 @@
+package com.github.volkov.znavi.diagnostics
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Lock-free histogram of durations with fixed memory.
+ *
+ * Buckets are log-linear in microseconds: values below [SUB_BUCKETS] have a bucket each, above that every power of two
+ * is split into [SUB_BUCKETS] buckets, so a percentile is reported with an error below 1/[SUB_BUCKETS] of its value.
+ * Durations above ~19 hours fall into the last bucket. Recording is a few atomic increments and may be done from any thread,
+ * reading while recording gives a slightly inconsistent but usable snapshot.
+ */
+class LatencyHistogram {
+
+    private val buckets = AtomicLongArray(BUCKET_COUNT)
+    private val count = AtomicLong()
+    private val totalMicros = AtomicLong()
+    private val maxMicros = AtomicLong()
+
+    fun record(nanos: Long) {
+        val micros = TimeUnit.NANOSECONDS.toMicros(nanos.coerceAtLeast(0))
+        buckets.incrementAndGet(bucketOf(micros))
+        count.incrementAndGet()
+        totalMicros.addAndGet(micros)
+        maxMicros.accumulateAndGet(micros) { a, b -> maxOf(a, b) }
+    }
+
+    val size: Long
+        get() = count.get()
+
+    val meanMillis: Double
+        get() = count.get().let { if (it == 0L) 0.0 else totalMicros.get() / 1000.0 / it }
+
+    val maxMillis: Double
+        get() = maxMicros.get() / 1000.0
+
+    /**
+     * Upper bound of the bucket containing the [percentile] (0..100) of recorded values, 0 if nothing is recorded.
+     */
+    fun percentileMillis(percentile: Double): Double {
+        val total = count.get()
+        if (total == 0L) return 0.0
+        val rank = Math.ceil(total * percentile / 100).toLong().coerceIn(1, total)
+        var seen = 0L
+        for (i in 0 until BUCKET_COUNT) {
+            seen += buckets.get(i)
+            if (seen >= rank) return upperBound(i).coerceAtMost(maxMicros.get()) / 1000.0
+        }
+        return maxMillis
+    }
+
+    fun reset() {
+        for (i in 0 until BUCKET_COUNT) {
+            buckets.set(i, 0)
+        }
+        count.set(0)
+        totalMicros.set(0)
+        maxMicros.set(0)
+    }
+
+    companion object {
+        private const val SUB_BUCKET_BITS = 4
+        private const val SUB_BUCKETS = 1 shl SUB_BUCKET_BITS
+        private const val MAX_EXPONENT = 35
+        private const val BUCKET_COUNT = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS
+
+        private fun bucketOf(micros: Long): Int {
+            if (micros < SUB_BUCKETS) return micros.toInt()
+            val exponent = 63 - java.lang.Long.numberOfLeadingZeros(micros)
+            if (exponent > MAX_EXPONENT) return BUCKET_COUNT - 1
+            val shift = exponent - SUB_BUCKET_BITS
+            val subBucket = (micros ushr shift).toInt() - SUB_BUCKETS
+            return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket
+        }
+
+        private fun upperBound(bucket: Int): Long {
+            if (bucket < SUB_BUCKETS) return bucket.toLong()
+            val shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS
+            val subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS
+            return ((SUB_BUCKETS + subBucket + 1).toLong() shl shift) - 1
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.github.volkov.znavi.diagnostics
+
+import jdk.jfr.Category
+import jdk.jfr.Description
+import jdk.jfr.Event
+import jdk.jfr.Label
+import jdk.jfr.Name
+import jdk.jfr.StackTrace
+import jdk.jfr.Timespan
+
+/*
+ * JDK Flight Recorder events of the show usages pipeline, one per phase.
+ *
+ * Events are created on every navigation, when JFR is not recording `begin`/`commit` are no-ops and
+ * fields are only filled after `shouldCommit` check, so the events may stay enabled in production sessions.
+ * Recordings are viewed in JMC under the "ZNavi" category.
+ */
+
+@Name("znavi.TargetResolution")
+@Label("Target Resolution")
+@Description("Find usages handler lookup and search planning for the element at caret")
+@Category("ZNavi")
+@StackTrace(false)
+class TargetResolutionEvent : Event() {
+    @JvmField
+    @Label("Target Kind")
+    var targetKind: String? = null
+
+    @JvmField
+    @Label("Strategy")
+    var strategy: String? = null
+
+    @JvmField
+    @Label("Direction")
+    var direction: Int = 0
+}
+
+@Name("znavi.SearcherStart")
+@Label("Searcher Start")
+@Description("Usage view and popup creation up to the start of the usage searcher")
+@Category("ZNavi")
+@StackTrace(false)
+class SearcherStartEvent : Event() {
+    @JvmField
+    @Label("Target Kind")
+    var targetKind: String? = null
+
+    @JvmField
+    @Label("Scope")
+    var scope: String? = null
+
+    @JvmField
+    @Label("Parallel")
+    var parallel: Boolean = false
+}
+
+@Name("znavi.FirstUsage")
+@Label("First Usage")
+@Description("Time from the searcher start to the first usage found")
+@Category("ZNavi")
+@StackTrace(false)
+class FirstUsageEvent : Event() {
+    @JvmField
+    @Label("Target Kind")
+    var targetKind: String? = null
+
+    @JvmField
+    @Label("Scope")
+    var scope: String? = null
+}
+
+@Name("znavi.UsageBatch")
+@Label("Usage Batch Append")
+@Description("Usages appended to the usage view, one event per batch, append time excludes waiting for the searcher")
+@Category("ZNavi")
+@StackTrace(false)
+class UsageBatchEvent : Event() {
+    @JvmField
+    @Label("Batch Usages")
+    var usages: Int = 0
+
+    @JvmField
+    @Label("Append Time")
+    @Timespan(Timespan.NANOSECONDS)
+    var appendNanos: Long = 0
+
+    @JvmField
+    @Label("Total Usages")
+    var totalUsages: Int = 0
+}
+
+@Name("znavi.Sort")
+@Label("Sort")
+@Description("Sorting of popup rows or of found usages")
+@Category("ZNavi")
+@StackTrace(false)
+class SortEvent : Event() {
+    @JvmField
+    @Label("What")
+    var what: String? = null
+
+    @JvmField
+    @Label("Size")
+    var size: Int = 0
+}
+
+@Name("znavi.RebuildSlice")
+@Label("EDT Rebuild Slice")
+@Description("One time slice of PingEDT activity in the event dispatch thread")
+@Category("ZNavi")
+@StackTrace(false)
+class RebuildSliceEvent : Event() {
+    @JvmField
+    @Label("Name")
+    var name: String? = null
+
+    @JvmField
+    @Label("Processed")
+    var processed: Int = 0
+
+    @JvmField
+    @Label("Rescheduled")
+    var rescheduled: Boolean = false
+}
+
+@Name("znavi.Search")
+@Label("Usage Search")
+@Description("Whole usage search from the searcher start to the completion callback")
+@Category("ZNavi")
+@StackTrace(false)
+class SearchEvent : Event() {
+    @JvmField
+    @Label("Target Kind")
+    var targetKind: String? = null
+
+    @JvmField
+    @Label("Scope")
+    var scope: String? = null
+
+    @JvmField
+    @Label("Usages")
+    var usages: Int = 0
+
+    @JvmField
+    @Label("Visible Usages")
+    var visibleUsages: Int = 0
+
+    @JvmField
+    @Label("Out Of Scope Usages")
+    var outOfScopeUsages: Int = 0
+
+    @JvmField
+    @Label("Cancelled")
+    var cancelled: Boolean = false
+}
+
+@Name("znavi.Navigate")
+@Label("Navigate And Hint")
+@Description("Navigation to the chosen usage and showing of the hint")
+@Category("ZNavi")
+@StackTrace(false)
+class NavigateEvent : Event() {
+    @JvmField
+    @Label("Navigated")
+    var navigated: Boolean = false
+
+    @JvmField
+    @Label("Hint")
+    var hint: String? = null
+}
@@ -0,0 +1,157 @@
+package com.github.volkov.znavi.diagnostics
+
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.components.service
+import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Navigation actions whose latency is collected by [NavigationStats].
+ */
+enum class NavigationKind(val shortcut: String, val title: String) {
+    NEXT_USAGE("alt-U", "Next usage"),
+    PREVIOUS_USAGE("alt-I", "Previous usage"),
+    CALLERS("alt-H", "Usages of containing method"),
+    PARAMETER("alt-O", "Go to parameter declaration");
+
+    companion object {
+        @JvmStatic
+        fun forDirection(direction: Int): NavigationKind? = when {
+            direction > 0 -> NEXT_USAGE
+            direction < 0 -> PREVIOUS_USAGE
+            else -> null
+        }
+    }
+}
+
+/**
+ * One run of a navigation action, from its start to the navigation or the shown popup.
+ *
+ * [finish] records the latency once, later calls (e.g. from a search restarted with more usages) are ignored.
+ * [abandon] drops the run when it is handed over to code which is not measured. EDT time is added until the end.
+ * Runs with a [context] are also written to the session trace by [SessionRecorder].
+ */
+class LatencyMeasurement internal constructor(val kind: NavigationKind, private val stats: NavigationStats.Stats) {
+    private val startNanos = System.nanoTime()
+    private val done = AtomicBoolean()
+
+    @Volatile
+    var context: SessionContext? = null
+
+    fun addEdt(nanos: Long) {
+        stats.edtNanos.addAndGet(nanos)
+    }
+
+    fun finish(usages: Int, cancelled: Boolean) {
+        if (!done.compareAndSet(false, true)) return
+        val nanos = System.nanoTime() - startNanos
+        stats.lastNanos.set(nanos)
+        stats.usages.addAndGet(usages.toLong())
+        if (cancelled) stats.cancelled.incrementAndGet()
+        // the last, the benchmark replay waits for the histogram size and then reads the counters above
+        stats.latency.record(nanos)
+        context?.let { SessionRecorder.getInstance().record(kind, it, nanos, usages, cancelled) }
+    }
+
+    fun abandon() {
+        if (done.compareAndSet(false, true)) stats.abandoned.incrementAndGet()
+    }
+}
+
+/**
+ * Latency histograms of the navigation actions and hit rates of the caches behind them, for the latency tool window.
+ *
+ * Everything is kept in fixed size lock-free counters since the IDE start or the last [reset].
+ */
+@Service
+class NavigationStats {
+
+    class Stats {
+        val latency = LatencyHistogram()
+        val edtNanos = AtomicLong()
+        val usages = AtomicLong()
+        val cancelled = AtomicLong()
+        val abandoned = AtomicLong()
+
+        /**
+         * Latency of the last finished measurement, read by the benchmark replay.
+         */
+        val lastNanos = AtomicLong()
+
+        fun reset() {
+            latency.reset()
+            edtNanos.set(0)
+            usages.set(0)
+            cancelled.set(0)
+            abandoned.set(0)
+            lastNanos.set(0)
+        }
+    }
+
+    class CacheStats {
+        val hits = AtomicLong()
+        val misses = AtomicLong()
+
+        val hitRate: Double
+            get() = (hits.get() + misses.get()).let { if (it == 0L) 0.0 else hits.get().toDouble() / it }
+    }
+
+    private val stats = NavigationKind.values().associateWith { Stats() }
+    private val caches = ConcurrentHashMap<String, CacheStats>()
+
+    fun start(kind: NavigationKind): LatencyMeasurement = LatencyMeasurement(kind, stats.getValue(kind))
+
+    fun stats(kind: NavigationKind): Stats = stats.getValue(kind)
+
+    fun cacheHit(cache: String) {
+        caches.computeIfAbsent(cache) { CacheStats() }.hits.incrementAndGet()
+    }
+
+    fun cacheMiss(cache: String) {
+        caches.computeIfAbsent(cache) { CacheStats() }.misses.incrementAndGet()
+    }
+
+    fun caches(): Map<String, CacheStats> = caches.toSortedMap()
+
+    fun reset() {
+        stats.values.forEach { it.reset() }
+        caches.clear()
+    }
+
+    fun toCsv(): String = buildString {
+        append("action,shortcut,searches,p50_ms,p95_ms,p99_ms,max_ms,mean_ms,avg_usages,cancelled,edt_ms\n")
+        for ((kind, s) in stats) {
+            val count = s.latency.size
+            append(kind.name).append(',').append(kind.shortcut).append(',').append(count).append(',')
+            append(format(s.latency.percentileMillis(50.0))).append(',')
+            append(format(s.latency.percentileMillis(95.0))).append(',')
+            append(format(s.latency.percentileMillis(99.0))).append(',')
+            append(format(s.latency.maxMillis)).append(',')
+            append(format(s.latency.meanMillis)).append(',')
+            append(format(if (count == 0L) 0.0 else s.usages.get().toDouble() / count)).append(',')
+            append(s.cancelled.get()).append(',')
+            append(format(s.edtNanos.get() / 1_000_000.0)).append('\n')
+        }
+        append('\n')
+        append("cache,hits,misses,hit_rate\n")
+        for ((name, cache) in caches()) {
+            append(name).append(',').append(cache.hits.get()).append(',').append(cache.misses.get()).append(',')
+            append(format(cache.hitRate)).append('\n')
+        }
+    }
+
+    companion object {
+        const val CALLER_INDEX = "caller index"
+        const val CALLER_GRAPH = "caller graph"
+        const val ARGUMENT_MAP = "argument map"
+        const val CALL_SITES = "resolved call sites"
+
+        @JvmStatic
+        fun getInstance(): NavigationStats = service()
+
+        @JvmStatic
+        fun format(value: Double): String = String.format(Locale.ROOT, "%.2f", value)
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.volkov.znavi.diagnostics
+
+import com.intellij.openapi.application.PathManager
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.components.service
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.editor.Editor
+import com.intellij.openapi.fileEditor.FileDocumentManager
+import com.intellij.openapi.project.guessProjectDir
+import com.intellij.openapi.util.registry.Registry
+import com.intellij.openapi.vfs.VfsUtilCore
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiMethod
+import com.intellij.psi.search.SearchScope
+import com.intellij.util.concurrency.AppExecutorUtil
+import org.jetbrains.kotlin.asJava.toLightMethods
+import org.jetbrains.kotlin.psi.KtNamedFunction
+import java.io.File
+import java.io.IOException
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.concurrent.TimeUnit
+
+/**
+ * Where a navigation started: [target] as `class#method/parameter count` if it is a method,
+ * [file] relative to the project directory with the caret [offset], and the search [scope] name.
+ * Replay runs the same actions, which take the scope from the IDE settings, the recorded one tells what was searched.
+ */
+class SessionContext(val target: String?, val file: String?, val offset: Int, val scope: String?)
+
+/**
+ * Navigation of a recorded session, a tab separated line of the session trace.
+ */
+class SessionEvent(
+    val timestamp: Long,
+    val kind: NavigationKind,
+    val target: String?,
+    val file: String?,
+    val offset: Int,
+    val scope: String?,
+    val latencyMicros: Long,
+    val usages: Int,
+    val cancelled: Boolean
+) {
+    fun toLine(): String = listOf(timestamp, kind.name, target ?: NONE, file ?: NONE, offset, scope ?: NONE,
+        latencyMicros, usages, if (cancelled) 1 else 0).joinToString("\t")
+
+    companion object {
+        const val HEADER = "# znavi session 1: timestamp kind target file offset scope latency_us usages cancelled"
+        private const val NONE = "-"
+
+        /**
+         * Parses a line written by [toLine], `null` for comments and blank lines.
+         */
+        @JvmStatic
+        fun parse(line: String): SessionEvent? {
+            if (line.isBlank() || line.startsWith("#")) return null
+            val fields = line.split('\t')
+            require(fields.size == 9) { "Session event is expected to have 9 fields: $line" }
+            fun text(i: Int) = fields[i].takeIf { it != NONE }
+            return SessionEvent(fields[0].toLong(), NavigationKind.valueOf(fields[1]), text(2), text(3), fields[4].toInt(),
+                text(5), fields[6].toLong(), fields[7].toInt(), fields[8] == "1")
+        }
+
+        @JvmStatic
+        fun load(file: File): List<SessionEvent> = file.readLines().mapNotNull { parse(it) }
+    }
+}
+
+/**
+ * Records the navigations of real sessions when `znavi.session.record` registry key is set: the actions pass
+ * a [context] to their [LatencyMeasurement], which passes it here with the measured latency when it finishes.
+ *
+ * Events are appended in background to a file per IDE run in `znavi-sessions` of the log directory,
+ * the `znavi-benchmark replay` command runs them again against a project checkout.
+ */
+@Service
+class SessionRecorder {
+
+    private val writer = AppExecutorUtil.createBoundedApplicationPoolExecutor("ZNavi Session Recorder", 1)
+    private val file = File(PathManager.getLogPath(), "znavi-sessions/session-${SimpleDateFormat("yyyyMMdd-HHmmss").format(Date())}.tsv")
+
+    /**
+     * Context of a navigation from [target] at the [editor] caret, `null` if sessions are not recorded.
+     * Should be called in read action.
+     */
+    fun context(target: PsiElement?, editor: Editor?, scope: SearchScope?): SessionContext? {
+        if (!Registry.`is`("znavi.session.record")) return null
+        val virtualFile = editor?.let { FileDocumentManager.getInstance().getFile(it.document) }
+        val projectDir = editor?.project?.guessProjectDir()
+        val path = virtualFile?.let { file -> projectDir?.let { VfsUtilCore.getRelativePath(file, it) } ?: file.path }
+        return SessionContext(target?.let { targetOf(it) }, path, editor?.caretModel?.offset ?: -1, scope?.displayName)
+    }
+
+    fun record(kind: NavigationKind, context: SessionContext, nanos: Long, usages: Int, cancelled: Boolean) {
+        val event = SessionEvent(System.currentTimeMillis(), kind, context.target, context.file, context.offset, context.scope,
+            TimeUnit.NANOSECONDS.toMicros(nanos), usages, cancelled)
+        writer.execute {
+            try {
+                if (!file.exists()) {
+                    file.parentFile.mkdirs()
+                    file.writeText(SessionEvent.HEADER + "\n")
+                    LOG.info("Recording ZNavi session to $file")
+                }
+                file.appendText(event.toLine() + "\n")
+            } catch (e: IOException) {
+                LOG.warn("Can't record ZNavi session to $file", e)
+            }
+        }
+    }
+
+    companion object {
+        private val LOG = Logger.getInstance(SessionRecorder::class.java)
+
+        @JvmStatic
+        fun getInstance(): SessionRecorder = service()
+
+        /**
+         * `class#method/parameter count` of a java method or kotlin function, the form replay resolves targets by.
+         */
+        @JvmStatic
+        fun targetOf(element: PsiElement): String? {
+            val method = when (element) {
+                is PsiMethod -> element
+                is KtNamedFunction -> element.toLightMethods().firstOrNull()
+                else -> null
+            } ?: return null
+            val className = method.containingClass?.qualifiedName ?: return null
+            return "$className#${method.name}/${method.parameterList.parametersCount}"
+        }
+    }
+}
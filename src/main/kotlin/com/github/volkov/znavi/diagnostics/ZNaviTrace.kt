@@ -0,0 +1,102 @@
+package com.github.volkov.znavi.diagnostics
+
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.util.registry.Registry
+import com.intellij.openapi.util.registry.RegistryValue
+import com.intellij.openapi.util.registry.RegistryValueListener
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReferenceArray
+import java.util.function.Supplier
+
+enum class TraceLevel { OFF, INFO, DEBUG, TRACE }
+
+/**
+ * Phases of the navigation pipeline trace points belong to, the same as the JFR events in `NavigationEvents.kt`.
+ */
+enum class TracePhase { RESOLVE, SEARCH_START, FIRST_USAGE, APPEND, SORT, REBUILD, COMPLETE, NAVIGATE }
+
+class TraceRecord(val timestamp: Long, val thread: String, val level: TraceLevel, val phase: TracePhase, val message: String) {
+    override fun toString(): String =
+        "${SimpleDateFormat("HH:mm:ss.SSS").format(Date(timestamp))} [$thread] $level $phase $message"
+}
+
+/**
+ * Structured trace of the navigation pipeline captured into a ring buffer of the last [CAPACITY] records,
+ * dumped on demand by the ZNavi Dump Trace action.
+ *
+ * The level is set by `znavi.trace.level` registry key (OFF, INFO, DEBUG, TRACE) and cached in a field,
+ * so a disabled trace point costs one volatile read when guarded by [isEnabled]: callers build messages only
+ * after the check. Trace points hit for every usage go through [sampled], which keeps one of `znavi.trace.sample`
+ * and builds the message only for the kept ones.
+ */
+object ZNaviTrace {
+
+    private const val CAPACITY = 4096
+
+    private val buffer = AtomicReferenceArray<TraceRecord>(CAPACITY)
+    private val next = AtomicLong()
+    private val sampleCounter = AtomicLong()
+
+    @Volatile
+    private var level = TraceLevel.OFF
+
+    @Volatile
+    private var sampleRate = 1
+
+    init {
+        update()
+        val listener = object : RegistryValueListener {
+            override fun afterValueChanged(value: RegistryValue) = update()
+        }
+        Registry.get("znavi.trace.level").addListener(listener, ApplicationManager.getApplication())
+        Registry.get("znavi.trace.sample").addListener(listener, ApplicationManager.getApplication())
+    }
+
+    @JvmStatic
+    fun isEnabled(level: TraceLevel): Boolean = this.level != TraceLevel.OFF && level <= this.level
+
+    @JvmStatic
+    fun log(level: TraceLevel, phase: TracePhase, message: String) {
+        if (!isEnabled(level)) return
+        val index = (next.getAndIncrement() % CAPACITY).toInt()
+        buffer.set(index, TraceRecord(System.currentTimeMillis(), Thread.currentThread().name, level, phase, message))
+    }
+
+    /**
+     * Logs one of `znavi.trace.sample` calls, for trace points hit per usage.
+     */
+    @JvmStatic
+    fun sampled(level: TraceLevel, phase: TracePhase, message: Supplier<String>) {
+        if (isEnabled(level) && sampleCounter.getAndIncrement() % sampleRate == 0L) {
+            log(level, phase, message.get())
+        }
+    }
+
+    /**
+     * Captured records, the oldest first.
+     */
+    @JvmStatic
+    fun records(): List<TraceRecord> {
+        val end = next.get()
+        val start = (end - CAPACITY).coerceAtLeast(0)
+        return (start until end).mapNotNull { buffer.get((it % CAPACITY).toInt()) }
+    }
+
+    @JvmStatic
+    fun clear() {
+        for (i in 0 until CAPACITY) {
+            buffer.set(i, null)
+        }
+    }
+
+    private fun update() {
+        level = try {
+            TraceLevel.valueOf(Registry.stringValue("znavi.trace.level").trim().toUpperCase())
+        } catch (e: IllegalArgumentException) {
+            TraceLevel.OFF
+        }
+        sampleRate = Registry.intValue("znavi.trace.sample", 100).coerceAtLeast(1)
+    }
+}
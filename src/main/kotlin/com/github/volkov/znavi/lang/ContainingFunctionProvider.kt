@@ -0,0 +1,23 @@
+package com.github.volkov.znavi.lang
+
+import com.intellij.lang.LanguageExtension
+import com.intellij.psi.PsiElement
+
+/**
+ * Finds the function containing an element, implemented per language.
+ *
+ * Returns one canonical target: the source declaration (not its light class counterpart),
+ * lambdas and other anonymous functions are skipped.
+ */
+interface ContainingFunctionProvider {
+
+    fun findContainingFunction(element: PsiElement): PsiElement?
+
+    companion object {
+        @JvmField
+        val EP = LanguageExtension<ContainingFunctionProvider>("com.github.volkov.znavi.containingFunctionProvider")
+
+        @JvmStatic
+        fun find(element: PsiElement): PsiElement? = EP.forLanguage(element.language)?.findContainingFunction(element)
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.volkov.znavi.lang
+
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiMethod
+import com.intellij.psi.util.PsiTreeUtil
+
+class JavaContainingFunctionProvider : ContainingFunctionProvider {
+    override fun findContainingFunction(element: PsiElement): PsiElement? =
+        PsiTreeUtil.getParentOfType(element, PsiMethod::class.java)
+}
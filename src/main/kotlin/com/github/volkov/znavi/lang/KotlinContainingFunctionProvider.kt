@@ -0,0 +1,19 @@
+package com.github.volkov.znavi.lang
+
+import com.intellij.psi.PsiElement
+import com.intellij.psi.util.PsiTreeUtil
+import org.jetbrains.kotlin.psi.KtConstructor
+import org.jetbrains.kotlin.psi.KtNamedFunction
+
+/**
+ * Anonymous (`fun() {}`) and local functions are skipped in favour of the enclosing member or top level function.
+ */
+class KotlinContainingFunctionProvider : ContainingFunctionProvider {
+    override fun findContainingFunction(element: PsiElement): PsiElement? {
+        var function = PsiTreeUtil.getParentOfType(element, KtNamedFunction::class.java, KtConstructor::class.java)
+        while (function is KtNamedFunction && (function.name == null || function.isLocal)) {
+            function = PsiTreeUtil.getParentOfType(function, KtNamedFunction::class.java, KtConstructor::class.java)
+        }
+        return function
+    }
+}
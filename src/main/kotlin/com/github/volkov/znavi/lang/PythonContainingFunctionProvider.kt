@@ -0,0 +1,13 @@
+package com.github.volkov.znavi.lang
+
+import com.intellij.psi.PsiElement
+import com.intellij.psi.util.PsiTreeUtil
+import com.jetbrains.python.psi.PyFunction
+
+/**
+ * Registered in `znavi-withPython.xml`, loaded only when python support is installed.
+ */
+class PythonContainingFunctionProvider : ContainingFunctionProvider {
+    override fun findContainingFunction(element: PsiElement): PsiElement? =
+        PsiTreeUtil.getParentOfType(element, PyFunction::class.java)
+}
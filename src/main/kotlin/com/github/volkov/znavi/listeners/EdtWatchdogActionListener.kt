@@ -0,0 +1,32 @@
+package com.github.volkov.znavi.listeners
+
+import com.github.volkov.znavi.diagnostics.EdtWatchdog
+import com.intellij.openapi.actionSystem.ActionManager
+import com.intellij.openapi.actionSystem.AnAction
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.actionSystem.DataContext
+import com.intellij.openapi.actionSystem.ex.AnActionListener
+
+/**
+ * Opens an [EdtWatchdog] section for the time a ZNavi action is performed.
+ */
+internal class EdtWatchdogActionListener : AnActionListener {
+
+    override fun beforeActionPerformed(action: AnAction, dataContext: DataContext, event: AnActionEvent) {
+        val id = ActionManager.getInstance().getId(action) ?: return
+        if (id.startsWith(ACTION_PREFIX)) {
+            EdtWatchdog.getInstance().enter(id.removePrefix(ACTION_PREFIX))
+        }
+    }
+
+    override fun afterActionPerformed(action: AnAction, dataContext: DataContext, event: AnActionEvent) {
+        val id = ActionManager.getInstance().getId(action) ?: return
+        if (id.startsWith(ACTION_PREFIX)) {
+            EdtWatchdog.getInstance().exit()
+        }
+    }
+
+    companion object {
+        private const val ACTION_PREFIX = "com.github.volkov.znavi."
+    }
+}
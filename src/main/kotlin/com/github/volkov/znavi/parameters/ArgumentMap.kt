@@ -0,0 +1,73 @@
+package com.github.volkov.znavi.parameters
+
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.TextRange
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiFile
+import com.intellij.psi.util.PsiModificationTracker
+
+/**
+ * Ranges of all the arguments in a file mapped to their parameter declarations, sorted by range start.
+ *
+ * Built by [ArgumentMapPass] for the document version [stamp] and java structure version [structureStamp],
+ * nested arguments follow the enclosing ones.
+ */
+class ArgumentMap(
+    val stamp: Long,
+    val structureStamp: Long,
+    private val starts: IntArray,
+    private val ends: IntArray,
+    private val parameters: Array<PsiElement>
+) {
+
+    val size: Int
+        get() = starts.size
+
+    /**
+     * Parameter of the innermost argument containing [offset].
+     */
+    fun parameterAt(offset: Int): PsiElement? = indexAt(offset).let { if (it < 0) null else parameters[it] }
+
+    /**
+     * Range of the next (or previous for negative [direction]) argument passed to the same parameter
+     * as the argument at [offset], wraps around the file.
+     */
+    fun nextWithSameParameter(offset: Int, direction: Int): TextRange? {
+        val current = indexAt(offset)
+        if (current < 0) return null
+        val parameter = parameters[current]
+        var index = current
+        for (i in 1 until size) {
+            index = (index + direction + size) % size
+            if (parameters[index] == parameter) return TextRange(starts[index], ends[index])
+        }
+        return null
+    }
+
+    private fun indexAt(offset: Int): Int {
+        var index = starts.binarySearch(offset)
+        if (index < 0) index = -index - 2
+        else while (index + 1 < size && starts[index + 1] == offset) index++
+        // the last range starting before the offset may be a sibling which has already ended, enclosing ones come earlier
+        while (index >= 0 && ends[index] < offset) index--
+        return index
+    }
+
+    companion object {
+        private val KEY = Key.create<ArgumentMap>("znavi.argument.map")
+
+        /**
+         * Map of [file] if it is up to date with [stamp] and the java structure, edits elsewhere may change what calls resolve to.
+         */
+        @JvmStatic
+        fun get(file: PsiFile, stamp: Long): ArgumentMap? = file.getUserData(KEY)?.takeIf {
+            it.stamp == stamp && it.structureStamp == structureStamp(file)
+        }
+
+        @JvmStatic
+        fun structureStamp(file: PsiFile): Long = PsiModificationTracker.getInstance(file.project).javaStructureModificationCount
+
+        @JvmStatic
+        fun put(file: PsiFile, map: ArgumentMap) = file.putUserData(KEY, map)
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.volkov.znavi.parameters
+
+import com.intellij.codeHighlighting.TextEditorHighlightingPass
+import com.intellij.codeHighlighting.TextEditorHighlightingPassFactory
+import com.intellij.codeHighlighting.TextEditorHighlightingPassFactoryRegistrar
+import com.intellij.codeHighlighting.TextEditorHighlightingPassRegistrar
+import com.intellij.openapi.editor.Document
+import com.intellij.openapi.editor.Editor
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.project.Project
+import com.intellij.psi.PsiCallExpression
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiFile
+import com.intellij.psi.PsiJavaFile
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor
+import com.intellij.psi.util.CachedValueProvider
+import com.intellij.psi.util.CachedValuesManager
+import com.intellij.psi.util.PsiModificationTracker
+import com.intellij.util.containers.ContainerUtil
+
+/**
+ * Builds [ArgumentMap] of a java file in background after it is opened or edited, as a highlighting pass.
+ *
+ * Resolved parameters are remembered per call expression in a weak map, after an edit only the calls which were
+ * reparsed (or whose parameters became invalid) are resolved again, the other ones only contribute their new ranges.
+ * The map is dropped when java structure changes, since then the same call may resolve to another method.
+ */
+class ArgumentMapPass(project: Project, private val file: PsiFile, document: Document) :
+    TextEditorHighlightingPass(project, document, false) {
+
+    private var map: ArgumentMap? = null
+
+    override fun doCollectInformation(progress: ProgressIndicator) {
+        val stamp = myDocument.modificationStamp
+        if (ArgumentMap.get(file, stamp) != null) return
+        // read before resolving, so that a structure change during the pass makes the map outdated
+        val structureStamp = ArgumentMap.structureStamp(file)
+        val resolved = resolvedCalls(file)
+        val entries = ArrayList<Triple<Int, Int, PsiElement>>()
+        file.accept(object : PsiRecursiveElementWalkingVisitor() {
+            override fun visitElement(element: PsiElement) {
+                ProgressManager.checkCanceled()
+                if (element is PsiCallExpression) {
+                    addArguments(element, resolved, entries)
+                }
+                super.visitElement(element)
+            }
+        })
+        entries.sortBy { it.first }
+        map = ArgumentMap(
+            stamp,
+            structureStamp,
+            IntArray(entries.size) { entries[it].first },
+            IntArray(entries.size) { entries[it].second },
+            Array(entries.size) { entries[it].third }
+        )
+    }
+
+    override fun doApplyInformationToEditor() {
+        map?.let { ArgumentMap.put(file, it) }
+    }
+
+    private fun addArguments(call: PsiCallExpression, resolved: MutableMap<PsiCallExpression, List<PsiElement>>,
+                             entries: MutableList<Triple<Int, Int, PsiElement>>) {
+        val arguments = call.argumentList?.expressions ?: return
+        if (arguments.isEmpty()) return
+        var parameters = resolved[call]
+        if (parameters == null || parameters.any { !it.isValid }) {
+            parameters = call.resolveMethod()?.let { ParameterResolver.parameters(it, false) } ?: emptyList()
+            resolved[call] = parameters
+        }
+        if (parameters.isEmpty()) return
+        arguments.forEachIndexed { index, argument ->
+            val range = argument.textRange
+            entries.add(Triple(range.startOffset, range.endOffset, parameters[index.coerceAtMost(parameters.size - 1)]))
+        }
+    }
+
+    class Factory : TextEditorHighlightingPassFactory, TextEditorHighlightingPassFactoryRegistrar {
+        override fun registerHighlightingPassFactory(registrar: TextEditorHighlightingPassRegistrar, project: Project) {
+            registrar.registerTextEditorHighlightingPass(this, null, null, false, -1)
+        }
+
+        override fun createHighlightingPass(file: PsiFile, editor: Editor): TextEditorHighlightingPass? =
+            if (file is PsiJavaFile) ArgumentMapPass(file.project, file, editor.document) else null
+    }
+
+    companion object {
+        private fun resolvedCalls(file: PsiFile): MutableMap<PsiCallExpression, List<PsiElement>> =
+            CachedValuesManager.getCachedValue(file) {
+                CachedValueProvider.Result.create(
+                    ContainerUtil.createConcurrentWeakMap<PsiCallExpression, List<PsiElement>>(),
+                    PsiModificationTracker.getInstance(file.project).javaStructureModificationTracker
+                )
+            }
+    }
+}
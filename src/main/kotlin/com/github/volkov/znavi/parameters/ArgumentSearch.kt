@@ -0,0 +1,162 @@
+package com.github.volkov.znavi.parameters
+
+import com.github.volkov.znavi.search.SearchPlan
+import com.github.volkov.znavi.search.UsageOffset
+import com.github.volkov.znavi.ui.UsageOffsetPopup
+import com.github.volkov.znavi.ui.UsageOffsetRow
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.progress.ProcessCanceledException
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.progress.Task
+import com.intellij.openapi.project.Project
+import com.intellij.psi.PsiCall
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiEnumConstant
+import com.intellij.psi.PsiMethod
+import com.intellij.psi.PsiMethodCallExpression
+import com.intellij.psi.PsiNewExpression
+import com.intellij.psi.PsiParameter
+import com.intellij.psi.PsiReference
+import com.intellij.psi.search.SearchScope
+import com.intellij.psi.search.searches.ReferencesSearch
+import com.intellij.psi.util.PsiTreeUtil
+import com.intellij.ui.awt.RelativePoint
+import com.intellij.usageView.UsageViewBundle
+import com.intellij.util.Processor
+import com.intellij.util.concurrency.AppExecutorUtil
+import com.intellij.util.concurrency.EdtScheduledExecutorService
+import org.jetbrains.kotlin.psi.KtCallElement
+import org.jetbrains.kotlin.psi.KtFunction
+import org.jetbrains.kotlin.psi.KtParameter
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+/**
+ * Values passed to a parameter: argument expressions at all the call sites of its method.
+ *
+ * Call sites come from one reference search of the method, the argument of each call site is found
+ * in parallel read actions and streamed into [UsageOffsetPopup] with the argument text in the detail column.
+ */
+object ArgumentSearch {
+
+    private const val MAX_ARGUMENT_LENGTH = 60
+    private const val DEFAULT_VALUE = "<default>"
+
+    private val executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+        "ZNavi Arguments", (Runtime.getRuntime().availableProcessors() - 1).coerceIn(1, 4))
+
+    internal class Target(val function: PsiElement, val name: String, val index: Int, val isVararg: Boolean)
+
+    /**
+     * Should be called in EDT.
+     */
+    @JvmStatic
+    fun isApplicable(parameter: PsiElement): Boolean = target(parameter) != null
+
+    @JvmStatic
+    fun start(project: Project, popupPosition: RelativePoint, parameter: PsiElement, scope: SearchScope) {
+        val target = target(parameter) ?: return
+        val title = "Arguments of ${target.name}"
+        val popup = UsageOffsetPopup(project, title, emptyList())
+        EdtScheduledExecutorService.getInstance().schedule({ popup.show(popupPosition) }, SearchPlan.DEFAULT_POPUP_DELAY_MS, TimeUnit.MILLISECONDS)
+
+        object : Task.Backgroundable(project, UsageViewBundle.message("progress.searching"), true) {
+            override fun run(indicator: ProgressIndicator) {
+                val pending = ArrayList<Future<*>>()
+                ReferencesSearch.search(target.function, scope).forEach(Processor { reference ->
+                    pending.add(executor.submit {
+                        val row = ReadAction.compute<UsageOffsetRow?, RuntimeException> { argumentRow(reference, target) }
+                        if (row != null) popup.add(row)
+                    })
+                    !popup.isDisposed && !indicator.isCanceled
+                })
+                for (future in pending) {
+                    await(future, indicator)
+                }
+            }
+
+            override fun onSuccess() {
+                if (popup.isDisposed) return
+                popup.finish()
+                popup.show(popupPosition)
+            }
+
+            override fun onCancel() {
+                popup.cancel()
+            }
+        }.queue()
+    }
+
+    internal fun target(parameter: PsiElement): Target? = when (parameter) {
+        is PsiParameter -> (parameter.declarationScope as? PsiMethod)?.let { method ->
+            Target(method, parameter.name, method.parameterList.getParameterIndex(parameter), parameter.isVarArgs)
+        }
+        is KtParameter -> (parameter.ownerFunction as? KtFunction)?.let { function ->
+            Target(function, parameter.name ?: "", function.valueParameters.indexOf(parameter), parameter.isVarArg)
+        }
+        else -> null
+    }?.takeIf { it.index >= 0 }
+
+    private fun argumentRow(reference: PsiReference, target: Target): UsageOffsetRow? {
+        val element = reference.element
+        val file = element.containingFile?.virtualFile ?: return null
+        val arguments = arguments(element, target) ?: return null
+        val callSite = UsageOffset(file, element.textRange.startOffset + reference.rangeInElement.startOffset)
+        if (arguments.isEmpty()) return UsageOffsetRow.create(callSite, null, DEFAULT_VALUE)
+        val text = arguments.joinToString(", ") { it.text }.replace(Regex("\\s+"), " ")
+        val detail = if (text.length > MAX_ARGUMENT_LENGTH) text.substring(0, MAX_ARGUMENT_LENGTH) + "..." else text
+        return UsageOffsetRow.create(UsageOffset(file, arguments[0].textRange.startOffset), null, detail)
+    }
+
+    /**
+     * Arguments passed to the parameter at the call site of [reference], empty if the default value is used,
+     * `null` if the reference is not a call.
+     */
+    internal fun arguments(reference: PsiElement, target: Target): List<PsiElement>? {
+        val javaCall = PsiTreeUtil.getParentOfType(reference, PsiCall::class.java, false)
+        if (javaCall != null) {
+            if (!isCallee(javaCall, reference)) return null
+            val expressions = javaCall.argumentList?.expressions ?: return null
+            return positional(expressions.toList(), target)
+        }
+        val kotlinCall = PsiTreeUtil.getParentOfType(reference, KtCallElement::class.java, false) ?: return null
+        if (kotlinCall.calleeExpression?.let { PsiTreeUtil.isAncestor(it, reference, false) } != true) return null
+        val arguments = kotlinCall.valueArguments
+        val named = arguments.filter { it.getArgumentName()?.asName?.asString() == target.name }
+        if (named.isNotEmpty()) return named.mapNotNull { it.getArgumentExpression() }
+        return positional(arguments.takeWhile { !it.isNamed() }.mapNotNull { it.getArgumentExpression() }, target)
+    }
+
+    /**
+     * Whether [reference] is what [call] calls, not e.g. the qualifier of the method or a reference in the arguments.
+     */
+    private fun isCallee(call: PsiCall, reference: PsiElement): Boolean = when (call) {
+        is PsiMethodCallExpression -> call.methodExpression == reference
+        is PsiNewExpression -> call.classOrAnonymousClassReference == reference
+        is PsiEnumConstant -> call == reference
+        else -> false
+    }
+
+    private fun positional(arguments: List<PsiElement>, target: Target): List<PsiElement> = when {
+        target.index >= arguments.size -> emptyList()
+        target.isVararg -> arguments.subList(target.index, arguments.size)
+        else -> listOf(arguments[target.index])
+    }
+
+    private fun await(future: Future<*>, indicator: ProgressIndicator) {
+        while (true) {
+            indicator.checkCanceled()
+            try {
+                future.get(50, TimeUnit.MILLISECONDS)
+                return
+            } catch (e: TimeoutException) {
+                // check cancellation
+            } catch (e: ExecutionException) {
+                if (e.cause is ProcessCanceledException) return
+                throw e
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.volkov.znavi.parameters
+
+import com.github.volkov.znavi.callers.CallerGraph
+import com.github.volkov.znavi.lang.ContainingFunctionProvider
+import com.github.volkov.znavi.search.UsageOffset
+import com.intellij.concurrency.SensitiveProgressWrapper
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.progress.ProcessCanceledException
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.util.registry.Registry
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiMethod
+import com.intellij.psi.PsiParameter
+import com.intellij.psi.PsiReference
+import com.intellij.psi.PsiReferenceExpression
+import com.intellij.psi.search.SearchScope
+import com.intellij.psi.search.searches.ReferencesSearch
+import com.intellij.util.concurrency.AppExecutorUtil
+import org.jetbrains.kotlin.idea.references.mainReference
+import org.jetbrains.kotlin.psi.KtNameReferenceExpression
+import org.jetbrains.kotlin.psi.KtParameter
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Node of a data flow trace: an argument passed to the parameter of [parent] at [callSite].
+ */
+class TraceNode(val parent: TraceNode?, val name: String, val detail: String?, val callSite: UsageOffset?) {
+    @Volatile
+    var state: State = State.TRACED
+
+    enum class State { TRACED, CYCLE, TRACED_ELSEWHERE, DEPTH_LIMIT }
+}
+
+/**
+ * Traces where the value of a parameter comes from: parameter → arguments at its call sites →
+ * parameters of the callers when the argument is just a parameter of the calling function → and so on.
+ *
+ * Hops are processed by a parallel worklist on a bounded pool, call sites of each function are searched once
+ * (several of its parameters may be traced). A parameter already on the path from the root is reported as a cycle,
+ * a parameter reached by another path is expanded only once, the other nodes are reported as traced elsewhere.
+ * Every node is reported to [onNode] as soon as it is resolved, parents before children.
+ * Depth and time are limited by `znavi.dataflow.depth` and `znavi.dataflow.timeout.seconds` registry keys,
+ * the running searches are cancelled when the time is over or the trace is cancelled.
+ */
+class DataFlowTrace(private val scope: SearchScope, private val onNode: (TraceNode) -> Unit) {
+
+    /**
+     * Hop to trace: [path] are the parameters from the root to [parameter], including it.
+     */
+    private class Work(val parameter: PsiElement, val node: TraceNode, val depth: Int, val path: Set<PsiElement>)
+
+    private val callSites = ConcurrentHashMap<PsiElement, List<PsiReference>>()
+    private val expanded = ConcurrentHashMap.newKeySet<PsiElement>()
+    private val outstanding = AtomicInteger()
+    private val maxDepth = Registry.intValue("znavi.dataflow.depth", 5)
+
+    @Volatile
+    private var stopped = false
+
+    /**
+     * Traces [parameter], returns `false` if the time limit was exceeded. Should be called in background.
+     */
+    fun run(parameter: PsiElement, indicator: ProgressIndicator): Boolean {
+        val deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Registry.intValue("znavi.dataflow.timeout.seconds", 20).toLong())
+        val name = ReadAction.compute<String, RuntimeException> { ArgumentSearch.target(parameter)?.name ?: parameter.text }
+        val root = TraceNode(null, name, null, null)
+        expanded.add(parameter)
+        onNode(root)
+        // cancelled at the deadline as well, the parent indicator is only cancelled by the user
+        val traceIndicator = SensitiveProgressWrapper(indicator)
+        submit(Work(parameter, root, 0, setOf(parameter)), traceIndicator)
+        try {
+            while (outstanding.get() > 0) {
+                indicator.checkCanceled()
+                if (System.currentTimeMillis() > deadline) return false
+                Thread.sleep(POLL_MS)
+            }
+            return true
+        } finally {
+            stopped = true
+            traceIndicator.cancel()
+        }
+    }
+
+    private fun submit(work: Work, indicator: ProgressIndicator) {
+        outstanding.incrementAndGet()
+        executor.execute {
+            try {
+                if (!stopped) {
+                    ProgressManager.getInstance().runProcess({ process(work, indicator) }, SensitiveProgressWrapper(indicator))
+                }
+            } catch (e: ProcessCanceledException) {
+                // the trace is over
+            } finally {
+                outstanding.decrementAndGet()
+            }
+        }
+    }
+
+    private fun process(work: Work, indicator: ProgressIndicator) {
+        val target = ReadAction.compute<ArgumentSearch.Target?, RuntimeException> {
+            if (work.parameter.isValid) ArgumentSearch.target(work.parameter) else null
+        } ?: return
+        val references = callSites[target.function]
+            ?: ReferencesSearch.search(target.function, scope).findAll().toList().also { callSites.putIfAbsent(target.function, it) }
+        for (reference in references) {
+            if (stopped) return
+            val next = ReadAction.compute<List<Work>, RuntimeException> { hop(reference, target, work) }
+            next.forEach { submit(it, indicator) }
+        }
+    }
+
+    /**
+     * Reports arguments at the call site of [reference], returns parameters to trace further.
+     */
+    private fun hop(reference: PsiReference, target: ArgumentSearch.Target, work: Work): List<Work> {
+        val element = reference.element
+        val file = element.containingFile?.virtualFile ?: return emptyList()
+        val arguments = ArgumentSearch.arguments(element, target) ?: return emptyList()
+        val caller = ContainingFunctionProvider.find(element)?.let { CallerGraph.presentableName(it) } ?: file.name
+        if (arguments.isEmpty()) {
+            onNode(TraceNode(work.node, caller, DEFAULT_VALUE, UsageOffset(file, element.textRange.startOffset)))
+            return emptyList()
+        }
+        val result = ArrayList<Work>()
+        for (argument in arguments) {
+            val node = TraceNode(work.node, caller, argument.text.replace(WHITESPACE, " "), UsageOffset(file, argument.textRange.startOffset))
+            val source = sourceParameter(argument)
+            if (source != null) {
+                when {
+                    source in work.path -> node.state = TraceNode.State.CYCLE
+                    work.depth + 1 >= maxDepth -> node.state = TraceNode.State.DEPTH_LIMIT
+                    !expanded.add(source) -> node.state = TraceNode.State.TRACED_ELSEWHERE
+                    else -> result.add(Work(source, node, work.depth + 1, work.path + source))
+                }
+            }
+            onNode(node)
+        }
+        return result
+    }
+
+    /**
+     * Parameter of the calling function if [argument] is just a reference to it.
+     */
+    private fun sourceParameter(argument: PsiElement): PsiElement? {
+        val resolved = when (argument) {
+            is PsiReferenceExpression -> argument.resolve()
+            is KtNameReferenceExpression -> argument.mainReference.resolve()
+            else -> null
+        }
+        return when (resolved) {
+            is PsiParameter -> resolved.takeIf { it.declarationScope is PsiMethod }
+            is KtParameter -> resolved.takeIf { it.ownerFunction != null }
+            else -> null
+        }
+    }
+
+    companion object {
+        private const val POLL_MS = 20L
+        private const val DEFAULT_VALUE = "<default>"
+        private val WHITESPACE = Regex("\\s+")
+
+        private val executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+            "ZNavi Data Flow", (Runtime.getRuntime().availableProcessors() - 1).coerceIn(1, 4))
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.volkov.znavi.parameters
+
+import com.github.volkov.znavi.diagnostics.NavigationStats
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiFile
+import com.intellij.psi.PsiMethod
+import com.intellij.psi.PsiNamedElement
+import com.intellij.psi.util.CachedValueProvider
+import com.intellij.psi.util.CachedValuesManager
+import org.jetbrains.kotlin.asJava.elements.KtLightMethod
+import org.jetbrains.kotlin.psi.KtElement
+import org.jetbrains.kotlin.psi.KtFunction
+import org.jetbrains.kotlin.psi.KtValueArgument
+import org.jetbrains.uast.UCallExpression
+import org.jetbrains.uast.UastCallKind
+import org.jetbrains.uast.toUElementOfType
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentMap
+
+/**
+ * Resolves an argument to the declaration of its parameter, in any UAST language.
+ *
+ * UAST conversion is expensive, so converted calls (and elements which are not calls) are cached per file,
+ * as are the resolved call sites. Both caches are dropped when the file changes,
+ * so alt-O on the other arguments of the same call neither converts nor resolves it again.
+ * All methods should be called in read action.
+ */
+object ParameterResolver {
+
+    private val NOT_A_CALL = Any()
+
+    private class CallSite(val method: PsiMethod, val parameters: List<PsiElement>) {
+        val isValid: Boolean
+            get() = method.isValid && parameters.all { it.isValid }
+    }
+
+    /**
+     * Parameter declaration of the argument at [offset], the first parameter if the caret is on the method name.
+     */
+    @JvmStatic
+    fun findParameter(file: PsiFile, offset: Int): PsiElement? {
+        val element = file.findElementAt(offset) ?: return null
+        val call = findCall(file, element) ?: return null
+        val site = callSite(file, call) ?: return null
+        if (site.parameters.isEmpty()) return null
+        val arguments = call.valueArguments
+        val index = arguments.indexOfFirst { it.sourcePsi?.textRange?.containsOffset(offset) == true }
+        if (index >= 0) {
+            val name = (arguments[index].sourcePsi?.parent as? KtValueArgument)?.getArgumentName()?.asName?.asString()
+            if (name != null) {
+                site.parameters.firstOrNull { (it as? PsiNamedElement)?.name == name }?.let { return it }
+            }
+        }
+        // arguments past the last parameter go to varargs
+        return site.parameters[index.coerceIn(0, site.parameters.size - 1)]
+    }
+
+    private fun findCall(file: PsiFile, element: PsiElement): UCallExpression? {
+        val conversions = conversions(file)
+        var psi: PsiElement? = element
+        while (psi != null && psi !is PsiFile) {
+            val current: PsiElement = psi
+            val converted = conversions.getOrPut(current) { current.toUElementOfType<UCallExpression>() ?: NOT_A_CALL }
+            if (converted is UCallExpression
+                && (converted.kind == UastCallKind.METHOD_CALL || converted.kind == UastCallKind.CONSTRUCTOR_CALL)) {
+                return converted
+            }
+            psi = current.parent
+        }
+        return null
+    }
+
+    private fun callSite(file: PsiFile, call: UCallExpression): CallSite? {
+        val cache = callSites(file)
+        val key = call.sourcePsi ?: return null
+        cache[key]?.takeIf { it.isValid }?.let {
+            NavigationStats.getInstance().cacheHit(NavigationStats.CALL_SITES)
+            return it
+        }
+        NavigationStats.getInstance().cacheMiss(NavigationStats.CALL_SITES)
+        val method = call.resolve() ?: return null
+        return CallSite(method, parameters(method, key is KtElement)).also { cache[key] = it }
+    }
+
+    /**
+     * Parameter declarations of [method] taken from stubs: for library methods neither sources are attached
+     * nor class files decompiled, for project methods the file is not parsed. The parameter finds its navigation
+     * element (and loads the AST) only when the editor navigates to it.
+     * Kotlin functions give their own value parameters rather than the light ones. Java calls of a Kotlin extension
+     * pass the receiver as the first argument, so for calls outside of Kotlin ([kotlinCall] is `false`)
+     * the receiver type stands for the first parameter.
+     */
+    @JvmStatic
+    fun parameters(method: PsiMethod, kotlinCall: Boolean): List<PsiElement> {
+        val kotlinFunction = (method as? KtLightMethod)?.kotlinOrigin as? KtFunction
+            ?: return method.parameterList.parameters.toList()
+        val receiver = kotlinFunction.receiverTypeReference
+        return if (receiver == null || kotlinCall) kotlinFunction.valueParameters
+               else listOf(receiver) + kotlinFunction.valueParameters
+    }
+
+    private fun conversions(file: PsiFile): ConcurrentMap<PsiElement, Any> =
+        CachedValuesManager.getCachedValue(file) {
+            CachedValueProvider.Result.create(ConcurrentHashMap<PsiElement, Any>(), file)
+        }
+
+    private fun callSites(file: PsiFile): ConcurrentMap<PsiElement, CallSite> =
+        CachedValuesManager.getCachedValue(file) {
+            CachedValueProvider.Result.create(ConcurrentHashMap<PsiElement, CallSite>(), file)
+        }
+}
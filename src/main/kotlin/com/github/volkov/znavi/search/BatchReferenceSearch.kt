@@ -0,0 +1,173 @@
+package com.github.volkov.znavi.search
+
+import com.intellij.concurrency.JobLauncher
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.TextRange
+import com.intellij.openapi.util.text.StringUtil
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiManager
+import com.intellij.psi.PsiNamedElement
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.psi.search.LocalSearchScope
+import com.intellij.psi.search.PsiSearchHelper
+import com.intellij.psi.search.SearchScope
+import com.intellij.psi.search.UsageSearchContext
+import com.intellij.psi.search.searches.ReferencesSearch
+import com.intellij.util.Processor
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Usages of several targets sharing one candidate files scan.
+ *
+ * Candidate files of all target names are united, every file is visited once and every identifier occurrence
+ * is resolved once, so the cost grows with the number of files, not with files multiplied by targets.
+ * Each target has its own sink, sinks are never called concurrently and stop receiving usages after returning `false`.
+ * Targets which can't be found by identifier scan (see [FastReferenceEngine.referenceTargets])
+ * are searched with [ReferencesSearch] one by one.
+ */
+class BatchReferenceSearch(private val project: Project, private val scope: SearchScope) {
+
+    private val sinks = LinkedHashMap<PsiElement, Processor<in UsageOffset>>()
+
+    fun add(target: PsiElement, sink: Processor<in UsageOffset>): BatchReferenceSearch {
+        sinks[target] = sink
+        return this
+    }
+
+    fun run(indicator: ProgressIndicator) {
+        val queries = ArrayList<Query>()
+        val fallback = ArrayList<Pair<PsiElement, Sink>>()
+        ReadAction.run<RuntimeException> {
+            for ((target, processor) in sinks) {
+                if (!target.isValid) continue
+                val sink = Sink(processor)
+                val query = prepare(target, sink)
+                if (query != null) queries.add(query) else fallback.add(target to sink)
+            }
+        }
+        if (queries.isNotEmpty()) {
+            scan(queries, indicator)
+        }
+        for ((target, sink) in fallback) {
+            indicator.checkCanceled()
+            searchReferences(target, sink)
+        }
+    }
+
+    private fun prepare(target: PsiElement, sink: Sink): Query? {
+        val targets = FastReferenceEngine.referenceTargets(target) ?: return null
+        val name = (FastReferenceEngine.unwrap(target) as? PsiNamedElement)?.name ?: return null
+        val useScope = scope.intersectWith(PsiSearchHelper.getInstance(project).getUseScope(target))
+        return Query(name, targets, useScope, sink)
+    }
+
+    private fun scan(queries: List<Query>, indicator: ProgressIndicator) {
+        val byName = queries.groupBy { it.name }
+        val files = LinkedHashMap<VirtualFile, MutableSet<String>>()
+        ReadAction.run<RuntimeException> {
+            for ((name, sameName) in byName) {
+                for (file in candidateFiles(name, sameName)) {
+                    files.getOrPut(file) { LinkedHashSet() }.add(name)
+                }
+            }
+        }
+        JobLauncher.getInstance().invokeConcurrentlyUnderProgress(files.keys.toList(), indicator) { file ->
+            ReadAction.run<RuntimeException> { scanFile(file, files.getValue(file), byName) }
+            true
+        }
+    }
+
+    private fun candidateFiles(name: String, queries: List<Query>): Set<VirtualFile> {
+        val result = LinkedHashSet<VirtualFile>()
+        val helper = PsiSearchHelper.getInstance(project)
+        val globalScopes = ArrayList<GlobalSearchScope>()
+        for (query in queries) {
+            when (val useScope = query.scope) {
+                is LocalSearchScope -> result.addAll(useScope.virtualFiles)
+                is GlobalSearchScope -> globalScopes.add(useScope)
+            }
+        }
+        if (globalScopes.isNotEmpty()) {
+            val union = GlobalSearchScope.union(globalScopes.toTypedArray())
+            helper.processCandidateFilesForText(union, SEARCH_CONTEXT, true, name) {
+                result.add(it)
+                true
+            }
+        }
+        return result
+    }
+
+    private fun scanFile(file: VirtualFile, names: Set<String>, byName: Map<String, List<Query>>) {
+        if (!file.isValid) return
+        val psiFile = PsiManager.getInstance(project).findFile(file) ?: return
+        val viewProvider = psiFile.viewProvider
+        val text = viewProvider.contents
+        for (name in names) {
+            val queries = byName.getValue(name).filter { !it.sink.stopped.get() && it.accepts(file) }
+            if (queries.isEmpty()) continue
+            var index = StringUtil.indexOf(text, name, 0)
+            while (index >= 0) {
+                ProgressManager.checkCanceled()
+                if (isIdentifierAt(text, index, name.length)) {
+                    val reference = viewProvider.findReferenceAt(index)
+                    if (reference != null) {
+                        for (query in queries) {
+                            val scope = query.scope
+                            if (scope is LocalSearchScope && !scope.containsRange(psiFile, TextRange(index, index + name.length))) continue
+                            if (query.targets.any { reference.isReferenceTo(it) }) {
+                                query.sink.accept(UsageOffset(file, index))
+                            }
+                        }
+                    }
+                }
+                index = StringUtil.indexOf(text, name, index + name.length)
+            }
+        }
+    }
+
+    private fun searchReferences(target: PsiElement, sink: Sink) {
+        ReferencesSearch.search(target, scope).forEach(Processor { reference ->
+            val usage = ReadAction.compute<UsageOffset?, RuntimeException> {
+                val element = reference.element
+                val file = element.containingFile?.virtualFile
+                if (file == null) null
+                else UsageOffset(file, element.textRange.startOffset + reference.rangeInElement.startOffset)
+            }
+            usage == null || sink.accept(usage)
+        })
+    }
+
+    private fun isIdentifierAt(text: CharSequence, start: Int, length: Int): Boolean {
+        val end = start + length
+        return (start == 0 || !Character.isJavaIdentifierPart(text[start - 1]))
+                && (end == text.length || !Character.isJavaIdentifierPart(text[end]))
+    }
+
+    private class Query(val name: String, val targets: List<PsiElement>, val scope: SearchScope, val sink: Sink) {
+        fun accepts(file: VirtualFile): Boolean = scope.contains(file)
+    }
+
+    private class Sink(private val processor: Processor<in UsageOffset>) {
+        val stopped = AtomicBoolean()
+
+        fun accept(usage: UsageOffset): Boolean {
+            synchronized(this) {
+                if (stopped.get()) return false
+                if (!processor.process(usage)) {
+                    stopped.set(true)
+                    return false
+                }
+                return true
+            }
+        }
+    }
+
+    companion object {
+        private val SEARCH_CONTEXT =
+            (UsageSearchContext.IN_CODE.toInt() or UsageSearchContext.IN_FOREIGN_LANGUAGES.toInt()).toShort()
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.volkov.znavi.search
+
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiField
+import com.intellij.psi.PsiMethod
+import com.intellij.psi.search.SearchScope
+import com.intellij.psi.search.searches.OverridingMethodsSearch
+import com.intellij.util.Processor
+import org.jetbrains.kotlin.asJava.elements.KtLightElement
+import org.jetbrains.kotlin.asJava.toLightMethods
+import org.jetbrains.kotlin.lexer.KtTokens
+import org.jetbrains.kotlin.psi.KtClass
+import org.jetbrains.kotlin.psi.KtDeclaration
+import org.jetbrains.kotlin.psi.KtNamedFunction
+import org.jetbrains.kotlin.psi.KtProperty
+import org.jetbrains.kotlin.psi.psiUtil.containingClassOrObject
+
+/**
+ * Fast path for usages of a plain (not overloaded, not overridden) Java or Kotlin method or field.
+ *
+ * Candidate files come from the word index, each file is scanned for the identifier
+ * and only references at the matching offsets are resolved, files are processed in parallel (see [BatchReferenceSearch]).
+ * Returns `null` whenever the target needs the full [com.intellij.find.findUsages.FindUsagesHandler] pipeline.
+ */
+object FastReferenceEngine {
+
+    /**
+     * Cheap check which can be done in EDT, [findUsages] can still refuse the target.
+     */
+    @JvmStatic
+    fun isApplicable(target: PsiElement): Boolean {
+        val element = unwrap(target)
+        return when (element) {
+            is PsiMethod -> !element.isConstructor && element.containingClass != null
+            is PsiField -> true
+            is KtNamedFunction -> element.name != null && !element.hasModifier(KtTokens.OPERATOR_KEYWORD)
+            is KtProperty -> element.hasModifier(KtTokens.PRIVATE_KEYWORD)
+            else -> false
+        }
+    }
+
+    @JvmStatic
+    fun findUsages(target: PsiElement, scope: SearchScope, indicator: ProgressIndicator): List<UsageOffset>? {
+        val plain = ReadAction.compute<Boolean, RuntimeException> {
+            target.isValid && referenceTargets(target) != null && isPlain(unwrap(target))
+        }
+        if (!plain) return null
+        val result = ArrayList<UsageOffset>()
+        BatchReferenceSearch(target.project, scope)
+            .add(target, Processor { result.add(it) })
+            .run(indicator)
+        return result.sortedWith(UsageOffset.ORDER)
+    }
+
+    internal fun unwrap(element: PsiElement): PsiElement =
+        (element as? KtLightElement<*, *>)?.kotlinOrigin ?: element
+
+    /**
+     * Elements a reference found by identifier scan should resolve to,
+     * or `null` if some references to [target] don't contain its name.
+     */
+    internal fun referenceTargets(target: PsiElement): List<PsiElement>? {
+        return when (val element = unwrap(target)) {
+            // Kotlin refers to java getters and setters by synthetic property names
+            is PsiMethod -> if (element.isConstructor || looksLikeAccessor(element.name)) null else listOf(element)
+            is PsiField -> listOf(element)
+            is KtNamedFunction ->
+                if (element.name == null
+                    || element.hasModifier(KtTokens.OPERATOR_KEYWORD)
+                    || element.annotationEntries.any { it.shortName?.asString() == "JvmName" }
+                ) null
+                else listOf(element) + element.toLightMethods()
+            is KtProperty -> if (element.hasModifier(KtTokens.PRIVATE_KEYWORD)) listOf(element) else null
+            else -> null
+        }
+    }
+
+    private fun isPlain(element: PsiElement): Boolean = when (element) {
+        is PsiMethod -> isPlainJavaMethod(element)
+        is KtNamedFunction -> isPlainKotlinFunction(element)
+        else -> true
+    }
+
+    private fun isPlainJavaMethod(method: PsiMethod): Boolean {
+        val containingClass = method.containingClass ?: return false
+        if (containingClass.findMethodsByName(method.name, true).size != 1) return false
+        if (method.findSuperMethods().isNotEmpty()) return false
+        return OverridingMethodsSearch.search(method).findFirst() == null
+    }
+
+    private fun isPlainKotlinFunction(function: KtNamedFunction): Boolean {
+        if (function.hasModifier(KtTokens.OVERRIDE_KEYWORD)
+            || function.hasModifier(KtTokens.OPEN_KEYWORD)
+            || function.hasModifier(KtTokens.ABSTRACT_KEYWORD)
+        ) return false
+        val containingClass = function.containingClassOrObject
+        if (containingClass is KtClass && containingClass.isInterface()) return false
+        val siblings: List<KtDeclaration> = containingClass?.declarations ?: function.containingKtFile.declarations
+        return siblings.count { it is KtNamedFunction && it.name == function.name } == 1
+    }
+
+    private fun looksLikeAccessor(name: String): Boolean =
+        listOf("get", "is", "set").any { prefix ->
+            name.length > prefix.length && name.startsWith(prefix) && Character.isUpperCase(name[prefix.length])
+        }
+}
@@ -0,0 +1,88 @@
+package com.github.volkov.znavi.search
+
+import com.github.volkov.znavi.diagnostics.LatencyMeasurement
+import com.github.volkov.znavi.ui.UsageOffsetPopup
+import com.github.volkov.znavi.ui.UsageOffsetRow
+import com.intellij.find.FindBundle
+import com.intellij.openapi.editor.Editor
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.progress.Task
+import com.intellij.openapi.project.Project
+import com.intellij.psi.PsiElement
+import com.intellij.psi.search.SearchScope
+import com.intellij.ui.awt.RelativePoint
+import com.intellij.usageView.UsageViewBundle
+import com.intellij.usageView.UsageViewUtil
+import com.intellij.util.Processor
+import com.intellij.util.concurrency.EdtScheduledExecutorService
+import java.util.Collections
+import java.util.concurrent.TimeUnit
+
+/**
+ * Searches usages of all ambiguous targets at once instead of asking to choose one first.
+ *
+ * Rows are streamed into a single [UsageOffsetPopup] tagged with their target, the popup is shown only
+ * if the search takes noticeable time. When the search is finished alt-U/alt-I navigate over the merged ring
+ * (or over the rows of the target picked in the popup).
+ *
+ * The caller passes the primary elements and the scope of the targets' find usages handlers, the search
+ * is recorded to [SearchPlanner] and finishes the [LatencyMeasurement] like the single target searches.
+ */
+object MergedTargetsSearch {
+
+    @JvmStatic
+    fun start(project: Project, editor: Editor?, popupPosition: RelativePoint, targets: List<PsiElement>,
+              scope: SearchScope, direction: Int, plan: SearchPlan, latency: LatencyMeasurement?) {
+        val tagged = targets.map { it to UsageViewUtil.getLongName(it) }
+        val tags = tagged.map { it.second }.distinct()
+        val title = UsageViewBundle.message("search.title.0.in.1", FindBundle.message("show.usages.ambiguous.title"), scope.displayName)
+        val popup = UsageOffsetPopup(project, title, tags)
+        if (plan.popupDelayMs != SearchPlan.NEVER_SHOW) {
+            EdtScheduledExecutorService.getInstance().schedule({ popup.show(popupPosition) }, plan.popupDelayMs, TimeUnit.MILLISECONDS)
+        }
+
+        val usages = Collections.synchronizedList(ArrayList<UsageOffsetRow>())
+        val start = System.currentTimeMillis()
+        object : Task.Backgroundable(project, UsageViewBundle.message("progress.searching"), true) {
+            override fun run(indicator: ProgressIndicator) {
+                val search = BatchReferenceSearch(project, scope)
+                for ((target, tag) in tagged) {
+                    search.add(target, Processor { usage ->
+                        val row = UsageOffsetRow.create(usage, tag)
+                        usages.add(row)
+                        popup.add(row)
+                        !popup.isDisposed
+                    })
+                }
+                search.run(indicator)
+            }
+
+            override fun onSuccess() {
+                val found = synchronized(usages) { usages.size }
+                if (popup.isDisposed) {
+                    latency?.finish(found, true)
+                    return
+                }
+                SearchPlanner.getInstance().record(plan, System.currentTimeMillis() - start, found)
+                popup.finish()
+                if (direction == 0) {
+                    latency?.finish(found, false)
+                    return
+                }
+                val selectedTag = popup.selectedTag
+                val ring = synchronized(usages) { usages.filter { selectedTag == null || it.tag == selectedTag } }
+                    .map { it.usage }
+                    .distinct()
+                    .sortedWith(UsageOffset.ORDER)
+                popup.cancel()
+                UsageOffsetNavigator.navigate(project, editor, ring, direction, scope)
+                latency?.finish(ring.size, false)
+            }
+
+            override fun onCancel() {
+                popup.cancel()
+                latency?.finish(synchronized(usages) { usages.size }, true)
+            }
+        }.queue()
+    }
+}
@@ -0,0 +1,219 @@
+package com.github.volkov.znavi.search
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.components.service
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.diagnostic.debug
+import com.intellij.openapi.fileEditor.FileDocumentManager
+import com.intellij.openapi.module.Module
+import com.intellij.openapi.module.ModuleManager
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.project.DumbService
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.registry.Registry
+import com.intellij.openapi.util.registry.RegistryValue
+import com.intellij.openapi.util.registry.RegistryValueListener
+import com.intellij.openapi.util.text.StringUtil
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiNamedElement
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.psi.search.LocalSearchScope
+import com.intellij.psi.search.ProjectScope
+import com.intellij.psi.search.PsiSearchHelper
+import com.intellij.psi.search.SearchScope
+import com.intellij.psi.search.UsageSearchContext
+import java.util.concurrent.ConcurrentHashMap
+
+enum class SearchStrategy {
+    /** Cheap search for next/previous usage: navigate when it completes, the usages popup is never shown. */
+    INLINE_NAVIGATE,
+
+    /** Expensive search with usages in the current file: try the next usage in the file before searching everywhere. */
+    FILE_LOCAL_FIRST,
+
+    /** Search scope partitions concurrently, see `ParallelUsageSearcher`. */
+    PARALLEL,
+
+    /** Very many candidate files: serial search which stops after the first [SearchPlan.PAGE_SIZE] usages, more on request. */
+    PAGED,
+
+    /** Single serial search. */
+    SERIAL
+}
+
+/**
+ * Decision of [SearchPlanner] for one search.
+ *
+ * [popupDelayMs] is [SHOW_IMMEDIATELY], [NEVER_SHOW] or delay before the usages popup is shown.
+ * [candidateFiles] is extrapolated from the probed part of the scope, see [SearchPlanner.plan].
+ */
+class SearchPlan(
+    val strategy: SearchStrategy,
+    val popupDelayMs: Long,
+    val kind: String,
+    val candidateFiles: Int,
+    val scopeSize: Int,
+    val estimatedMs: Double
+) {
+    val isParallel: Boolean
+        get() = strategy == SearchStrategy.PARALLEL || strategy == SearchStrategy.FILE_LOCAL_FIRST && scopeSize > 1
+
+    override fun toString(): String =
+        "$strategy kind=$kind candidateFiles=$candidateFiles scopeSize=$scopeSize estimated=${estimatedMs.toLong()}ms popupDelay=$popupDelayMs"
+
+    companion object {
+        const val SHOW_IMMEDIATELY = 0L
+        const val NEVER_SHOW = -1L
+        const val DEFAULT_POPUP_DELAY_MS = 300L
+        const val PAGE_SIZE = 30
+
+        /**
+         * Plan used when there is nothing to estimate, e.g. for restarted searches or in dumb mode.
+         */
+        @JvmField
+        val DEFAULT = SearchPlan(SearchStrategy.PARALLEL, DEFAULT_POPUP_DELAY_MS, "unknown", -1, -1, -1.0)
+    }
+}
+
+/**
+ * Chooses the search strategy and popup timing from the estimated search cost.
+ *
+ * The cost is candidate files count from the word index multiplied by the average time per candidate file
+ * which previous searches of the same target kind took.
+ *
+ * `znavi.search.strategy` registry key other than `AUTO` makes every plan use that strategy, e.g. in performance tests.
+ * The history is forgotten when the key changes and is not recorded while a strategy is set,
+ * so that timings of the same search are comparable.
+ */
+@Service
+class SearchPlanner : Disposable {
+
+    private val history = ConcurrentHashMap<String, Double>()
+
+    init {
+        Registry.get(STRATEGY_KEY).addListener(object : RegistryValueListener {
+            override fun afterValueChanged(value: RegistryValue) = history.clear()
+        }, this)
+    }
+
+    /**
+     * Must be called in a background read action, the word index is queried here.
+     *
+     * Candidate files are counted in at most [MAX_PROBED_PARTITIONS] module partitions of a [GlobalSearchScope],
+     * spread evenly over the modules, and extrapolated to the rest of them; libraries are always counted.
+     * Counting in a partition stops at [MAX_PROBED_FILES], so the count of such a partition is a lower bound.
+     */
+    fun plan(target: PsiElement, scope: SearchScope, currentFile: VirtualFile?, direction: Int): SearchPlan {
+        val project = target.project
+        if (DumbService.isDumb(project)) return SearchPlan.DEFAULT
+        val kind = target.javaClass.simpleName
+        val name = (target as? PsiNamedElement)?.name ?: return SearchPlan.DEFAULT
+
+        val candidateFiles: Int
+        val scopeSize: Int
+        when (scope) {
+            is GlobalSearchScope -> {
+                val modules = ModuleManager.getInstance(project).modules.filter { scope.isSearchInModuleContent(it) }
+                val libraries = if (scope.isSearchInLibraries)
+                    scope.intersectWith(GlobalSearchScope.notScope(ProjectScope.getContentScope(project))) else null
+                candidateFiles = if (modules.isEmpty()) count(project, scope, name)
+                                 else extrapolate(project, scope, modules, name) + (libraries?.let { count(project, it, name) } ?: 0)
+                scopeSize = modules.size + if (libraries != null) 1 else 0
+            }
+            is LocalSearchScope -> {
+                candidateFiles = scope.virtualFiles.size
+                scopeSize = 1
+            }
+            else -> {
+                candidateFiles = 0
+                scopeSize = 1
+            }
+        }
+        val estimatedMs = BASE_COST_MS + candidateFiles * (history[kind] ?: DEFAULT_MS_PER_FILE)
+
+        val strategy = pinned() ?: when {
+            direction != 0 && estimatedMs <= CHEAP_MS -> SearchStrategy.INLINE_NAVIGATE
+            direction != 0 && estimatedMs >= EXPENSIVE_MS && mentions(currentFile, scope, name) -> SearchStrategy.FILE_LOCAL_FIRST
+            // a page of a navigation ring would navigate to wrong usages, so only the popup is paged
+            direction == 0 && candidateFiles >= PAGED_FILES -> SearchStrategy.PAGED
+            scopeSize > 1 -> SearchStrategy.PARALLEL
+            else -> SearchStrategy.SERIAL
+        }
+        val popupDelay = when (strategy) {
+            SearchStrategy.INLINE_NAVIGATE -> SearchPlan.NEVER_SHOW
+            SearchStrategy.FILE_LOCAL_FIRST, SearchStrategy.PAGED -> SearchPlan.SHOW_IMMEDIATELY
+            else -> popupDelay(estimatedMs)
+        }
+        val plan = SearchPlan(strategy, popupDelay, kind, candidateFiles, scopeSize, estimatedMs)
+        LOG.debug { "Search plan for $name: $plan" }
+        return plan
+    }
+
+    private fun extrapolate(project: Project, scope: GlobalSearchScope, modules: List<Module>, name: String): Int {
+        val probed = minOf(modules.size, MAX_PROBED_PARTITIONS)
+        var candidateFiles = 0
+        for (i in 0 until probed) {
+            candidateFiles += count(project, scope.intersectWith(GlobalSearchScope.moduleScope(modules[i * modules.size / probed])), name)
+        }
+        return (candidateFiles.toLong() * modules.size / probed).toInt()
+    }
+
+    private fun count(project: Project, scope: GlobalSearchScope, name: String): Int {
+        var candidateFiles = 0
+        PsiSearchHelper.getInstance(project).processCandidateFilesForText(scope, UsageSearchContext.IN_CODE, true, name) {
+            ProgressManager.checkCanceled()
+            ++candidateFiles < MAX_PROBED_FILES
+        }
+        return candidateFiles
+    }
+
+    /**
+     * Whether the text of [file], usually open in the editor, contains [name].
+     */
+    private fun mentions(file: VirtualFile?, scope: SearchScope, name: String): Boolean {
+        if (file == null || !scope.contains(file)) return false
+        val document = FileDocumentManager.getInstance().getCachedDocument(file) ?: return false
+        return StringUtil.contains(document.immutableCharSequence, name)
+    }
+
+    /**
+     * Records actual cost of the planned search, updates the average time per candidate file of the target kind.
+     */
+    fun record(plan: SearchPlan, actualMs: Long, usages: Int) {
+        LOG.debug { "Search finished: ${plan.strategy} kind=${plan.kind} estimated=${plan.estimatedMs.toLong()}ms actual=${actualMs}ms usages=$usages" }
+        // only a part of the usages is searched by these
+        if (pinned() != null || plan.candidateFiles <= 0 || plan.strategy == SearchStrategy.FILE_LOCAL_FIRST || plan.strategy == SearchStrategy.PAGED) return
+        val perFile = (actualMs - BASE_COST_MS).coerceAtLeast(0.0) / plan.candidateFiles
+        history.merge(plan.kind, perFile) { old, new -> old * (1 - HISTORY_WEIGHT) + new * HISTORY_WEIGHT }
+    }
+
+    private fun pinned(): SearchStrategy? {
+        val value = Registry.stringValue(STRATEGY_KEY).trim().toUpperCase()
+        return SearchStrategy.values().firstOrNull { it.name == value }
+    }
+
+    override fun dispose() {
+    }
+
+    private fun popupDelay(estimatedMs: Double): Long =
+        if (estimatedMs >= EXPENSIVE_MS) SearchPlan.SHOW_IMMEDIATELY else SearchPlan.DEFAULT_POPUP_DELAY_MS
+
+    companion object {
+        private val LOG = Logger.getInstance(SearchPlanner::class.java)
+        private const val STRATEGY_KEY = "znavi.search.strategy"
+
+        const val MAX_PROBED_FILES = 500
+        const val MAX_PROBED_PARTITIONS = 8
+        private const val PAGED_FILES = MAX_PROBED_FILES
+        private const val CHEAP_MS = 100.0
+        private const val BASE_COST_MS = 20.0
+        private const val DEFAULT_MS_PER_FILE = 2.0
+        private const val EXPENSIVE_MS = 1000.0
+        private const val HISTORY_WEIGHT = 0.3
+
+        @JvmStatic
+        fun getInstance(): SearchPlanner = service()
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.volkov.znavi.search
+
+import com.intellij.openapi.vfs.VirtualFile
+
+/**
+ * Lightweight usage record: start offset of the reference identifier in the file.
+ */
+data class UsageOffset(val file: VirtualFile, val offset: Int) {
+
+    companion object {
+        /**
+         * Order of next/previous usage navigation by every search path, the usages popup included.
+         */
+        @JvmField
+        val ORDER: Comparator<UsageOffset> = compareBy<UsageOffset> { it.file.path }.thenBy { it.offset }
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.volkov.znavi.search
+
+import com.intellij.codeInsight.hint.HintManager
+import com.intellij.openapi.editor.Editor
+import com.intellij.openapi.fileEditor.FileDocumentManager
+import com.intellij.openapi.fileEditor.FileEditorManager
+import com.intellij.openapi.fileEditor.OpenFileDescriptor
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.wm.IdeFocusManager
+import com.intellij.psi.search.SearchScope
+import com.intellij.usageView.UsageViewBundle
+
+/**
+ * Next/previous usage navigation over [UsageOffset]s sorted by [UsageOffset.ORDER], the order the usages popup
+ * sorts its usages by too, so every search path walks the same ring.
+ */
+object UsageOffsetNavigator {
+
+    @JvmStatic
+    fun navigate(project: Project, editor: Editor?, usages: List<UsageOffset>, direction: Int, scope: SearchScope) {
+        if (usages.isEmpty()) {
+            if (editor != null) {
+                HintManager.getInstance().showInformationHint(editor, UsageViewBundle.message("no.usages.found.in", scope.displayName))
+            }
+            return
+        }
+        val selfIndex = if (editor == null) -1 else indexOfCaret(editor, usages)
+        val navigateIndex = if (selfIndex == -1 && direction < 0) usages.size - 1
+        else (selfIndex + direction + usages.size) % usages.size
+        val hint = if (usages.size == 1) UsageViewBundle.message("show.usages.only.usage", scope.displayName)
+        else String.format("Usage %d of %d", navigateIndex + 1, usages.size)
+        navigateAndHint(project, usages[navigateIndex], hint)
+    }
+
+    @JvmStatic
+    fun navigateAndHint(project: Project, usage: UsageOffset, hint: String) {
+        val newEditor = FileEditorManager.getInstance(project)
+            .openTextEditor(OpenFileDescriptor(project, usage.file, usage.offset), true) ?: return
+        IdeFocusManager.getInstance(project).doWhenFocusSettlesDown {
+            if (!newEditor.isDisposed) {
+                HintManager.getInstance().showInformationHint(newEditor, hint)
+            }
+        }
+    }
+
+    /**
+     * Index of the usage which identifier contains the caret, or -1.
+     */
+    @JvmStatic
+    fun indexOfCaret(editor: Editor, usages: List<UsageOffset>): Int {
+        val file = FileDocumentManager.getInstance().getFile(editor.document) ?: return -1
+        val text = editor.document.charsSequence
+        var start = editor.caretModel.offset
+        while (start > 0 && Character.isJavaIdentifierPart(text[start - 1])) {
+            start--
+        }
+        return usages.indexOfFirst { it.file == file && it.offset == start }
+    }
+}
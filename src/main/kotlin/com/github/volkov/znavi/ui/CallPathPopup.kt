@@ -0,0 +1,119 @@
+package com.github.volkov.znavi.ui
+
+import com.github.volkov.znavi.callers.CallPathStep
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.actionSystem.CommonShortcuts
+import com.intellij.openapi.fileEditor.OpenFileDescriptor
+import com.intellij.openapi.project.DumbAwareAction
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.ui.popup.JBPopup
+import com.intellij.openapi.ui.popup.JBPopupFactory
+import com.intellij.openapi.ui.popup.JBPopupListener
+import com.intellij.openapi.ui.popup.LightweightWindowEvent
+import com.intellij.pom.Navigatable
+import com.intellij.ui.CollectionListModel
+import com.intellij.ui.ColoredListCellRenderer
+import com.intellij.ui.DoubleClickListener
+import com.intellij.ui.ScrollPaneFactory
+import com.intellij.ui.SimpleTextAttributes
+import com.intellij.ui.awt.RelativePoint
+import com.intellij.ui.components.JBList
+import com.intellij.util.ui.JBUI
+import java.awt.BorderLayout
+import java.awt.event.MouseEvent
+import javax.swing.JLabel
+import javax.swing.JList
+import javax.swing.JPanel
+import javax.swing.ListSelectionModel
+
+/**
+ * Call path from the entry point to the target, one function per row, the path is replaced when a shorter one is found.
+ * Enter navigates to the call of the next function.
+ */
+class CallPathPopup(private val project: Project, title: String) {
+
+    private val model = CollectionListModel<CallPathStep>()
+    private val list = JBList(model)
+    private val status = JLabel("Searching...")
+    private val popup: JBPopup
+
+    init {
+        list.selectionMode = ListSelectionModel.SINGLE_SELECTION
+        list.cellRenderer = StepRenderer()
+        list.emptyText.text = "Searching call path..."
+        val panel = JPanel(BorderLayout())
+        panel.add(ScrollPaneFactory.createScrollPane(list, true), BorderLayout.CENTER)
+        status.border = JBUI.Borders.empty(2, 4)
+        panel.add(status, BorderLayout.SOUTH)
+        object : DoubleClickListener() {
+            override fun onDoubleClick(event: MouseEvent): Boolean {
+                navigateToSelected()
+                return true
+            }
+        }.installOn(list)
+        object : DumbAwareAction() {
+            override fun actionPerformed(e: AnActionEvent) = navigateToSelected()
+        }.registerCustomShortcutSet(CommonShortcuts.ENTER, list)
+
+        popup = JBPopupFactory.getInstance().createComponentPopupBuilder(panel, list)
+            .setTitle(title)
+            .setMovable(true)
+            .setResizable(true)
+            .setRequestFocus(true)
+            .setCancelOnClickOutside(false)
+            .setMinSize(JBUI.size(400, 150))
+            .createPopup()
+    }
+
+    val isDisposed: Boolean
+        get() = popup.isDisposed
+
+    fun show(position: RelativePoint) = popup.show(position)
+
+    fun cancel() = popup.cancel()
+
+    fun addCloseListener(listener: () -> Unit) {
+        popup.addListener(object : JBPopupListener {
+            override fun onClosed(event: LightweightWindowEvent) = listener()
+        })
+    }
+
+    /**
+     * Should be called in EDT.
+     */
+    fun setPath(path: List<CallPathStep>) {
+        model.replaceAll(path)
+        list.selectedIndex = 0
+        status.text = "Path of ${path.size - 1} calls, searching for a shorter one..."
+    }
+
+    /**
+     * Should be called in EDT.
+     */
+    fun setStatus(text: String) {
+        status.text = text
+    }
+
+    private fun navigateToSelected() {
+        val step = list.selectedValue ?: return
+        val callSite = step.callSite
+        if (callSite != null) {
+            OpenFileDescriptor(project, callSite.file, callSite.offset).navigate(true)
+        }
+        else {
+            (step.function as? Navigatable)?.navigate(true)
+        }
+    }
+
+    private class StepRenderer : ColoredListCellRenderer<CallPathStep>() {
+        override fun customizeCellRenderer(list: JList<out CallPathStep>, value: CallPathStep, index: Int,
+                                           selected: Boolean, hasFocus: Boolean) {
+            append("${index + 1}. ", SimpleTextAttributes.GRAYED_ATTRIBUTES)
+            append(value.name, SimpleTextAttributes.REGULAR_BOLD_ATTRIBUTES)
+            val callSite = value.callSite
+            if (callSite != null) {
+                append("  ${callSite.file.name}", SimpleTextAttributes.GRAYED_ATTRIBUTES)
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.github.volkov.znavi.ui
+
+import com.github.volkov.znavi.callers.Caller
+import com.github.volkov.znavi.callers.CallerGraph
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.actionSystem.CommonShortcuts
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.fileEditor.OpenFileDescriptor
+import com.intellij.openapi.project.DumbAwareAction
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.ui.popup.JBPopup
+import com.intellij.openapi.ui.popup.JBPopupFactory
+import com.intellij.openapi.ui.popup.JBPopupListener
+import com.intellij.openapi.ui.popup.LightweightWindowEvent
+import com.intellij.pom.Navigatable
+import com.intellij.psi.PsiElement
+import com.intellij.ui.ColoredTreeCellRenderer
+import com.intellij.ui.DoubleClickListener
+import com.intellij.ui.ScrollPaneFactory
+import com.intellij.ui.SimpleTextAttributes
+import com.intellij.ui.awt.RelativePoint
+import com.intellij.ui.treeStructure.Tree
+import com.intellij.util.ui.JBUI
+import java.awt.event.MouseEvent
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import javax.swing.JTree
+import javax.swing.event.TreeExpansionEvent
+import javax.swing.event.TreeWillExpandListener
+import javax.swing.tree.DefaultMutableTreeNode
+import javax.swing.tree.DefaultTreeModel
+import javax.swing.tree.TreePath
+
+/**
+ * Keyboard driven tree of callers, children of a node are searched when it is expanded.
+ *
+ * Searches go through [CallerGraph]: callers of all the children are prefetched concurrently and a function
+ * which is already in the tree (or was expanded in another popup) is not searched again.
+ * A function calling itself through its ancestors is shown as a recursive leaf.
+ * Closing the popup cancels searches which are still running.
+ */
+class CallerTreePopup(private val project: Project, root: PsiElement, rootName: String) {
+
+    private class CallerNode(val function: PsiElement?, val name: String, val caller: Caller?, val recursive: Boolean) {
+        var state = State.NOT_LOADED
+    }
+
+    private enum class State { NOT_LOADED, LOADING, LOADED, FAILED }
+
+    private val rootNode = DefaultMutableTreeNode(CallerNode(root, rootName, null, false))
+    private val model = DefaultTreeModel(rootNode)
+    private val tree = Tree(model)
+    private val pending = ArrayList<CompletableFuture<List<Caller>>>()
+    private val popup: JBPopup
+
+    init {
+        rootNode.add(DefaultMutableTreeNode(SEARCHING))
+        tree.isRootVisible = true
+        tree.showsRootHandles = true
+        tree.cellRenderer = Renderer()
+        tree.addTreeWillExpandListener(object : TreeWillExpandListener {
+            override fun treeWillExpand(event: TreeExpansionEvent) {
+                (event.path.lastPathComponent as? DefaultMutableTreeNode)?.let { load(it) }
+            }
+
+            override fun treeWillCollapse(event: TreeExpansionEvent) {}
+        })
+        object : DoubleClickListener() {
+            override fun onDoubleClick(event: MouseEvent): Boolean {
+                navigateToSelected()
+                return true
+            }
+        }.installOn(tree)
+        object : DumbAwareAction() {
+            override fun actionPerformed(e: AnActionEvent) = navigateToSelected()
+        }.registerCustomShortcutSet(CommonShortcuts.ENTER, tree)
+
+        popup = JBPopupFactory.getInstance().createComponentPopupBuilder(ScrollPaneFactory.createScrollPane(tree, true), tree)
+            .setTitle("Callers of $rootName")
+            .setMovable(true)
+            .setResizable(true)
+            .setRequestFocus(true)
+            .setMinSize(JBUI.size(400, 200))
+            .createPopup()
+        popup.addListener(object : JBPopupListener {
+            override fun onClosed(event: LightweightWindowEvent) {
+                pending.forEach { it.cancel(false) }
+                pending.clear()
+            }
+        })
+        tree.expandPath(TreePath(rootNode.path))
+        tree.selectionPath = TreePath(rootNode.path)
+    }
+
+    fun show(position: RelativePoint) = popup.show(position)
+
+    private fun load(treeNode: DefaultMutableTreeNode) {
+        val node = treeNode.userObject as? CallerNode ?: return
+        val function = node.function ?: return
+        if (node.state != State.NOT_LOADED) return
+        node.state = State.LOADING
+        val future = CallerGraph.getInstance(project).callersAsync(function)
+        pending.add(future)
+        future.whenComplete { callers, error ->
+            ApplicationManager.getApplication().invokeLater({
+                pending.remove(future)
+                loaded(treeNode, callers, error)
+            }, { popup.isDisposed })
+        }
+    }
+
+    private fun loaded(treeNode: DefaultMutableTreeNode, callers: List<Caller>?, error: Throwable?) {
+        val node = treeNode.userObject as CallerNode
+        treeNode.removeAllChildren()
+        if (callers == null) {
+            // a search cancelled by the graph fails the request with the cancellation as the cause
+            val cause = (error as? CompletionException)?.cause ?: error
+            node.state = if (cause is CancellationException) State.NOT_LOADED else State.FAILED
+            if (node.state == State.NOT_LOADED) treeNode.add(DefaultMutableTreeNode(SEARCHING))
+            model.nodeStructureChanged(treeNode)
+            return
+        }
+        node.state = State.LOADED
+        val ancestors = treeNode.userObjectPath.mapNotNull { (it as? CallerNode)?.function }.toSet()
+        for (caller in callers.sortedBy { it.name }) {
+            val recursive = caller.function != null && caller.function in ancestors
+            val child = DefaultMutableTreeNode(CallerNode(caller.function, caller.name, caller, recursive))
+            if (caller.function != null && !recursive) {
+                child.add(DefaultMutableTreeNode(SEARCHING))
+            }
+            treeNode.add(child)
+        }
+        model.nodeStructureChanged(treeNode)
+        tree.expandPath(TreePath(treeNode.path))
+        prefetch(treeNode)
+    }
+
+    /**
+     * Starts searching callers of the children before they are expanded, the results stay in [CallerGraph].
+     * Closing the popup cancels only the requests of the popup, searches other features wait for go on.
+     */
+    private fun prefetch(treeNode: DefaultMutableTreeNode) {
+        val graph = CallerGraph.getInstance(project)
+        for (child in treeNode.children()) {
+            val node = (child as DefaultMutableTreeNode).userObject as CallerNode
+            if (node.function != null && !node.recursive) {
+                pending.add(graph.callersAsync(node.function))
+            }
+        }
+    }
+
+    private fun navigateToSelected() {
+        val node = (tree.lastSelectedPathComponent as? DefaultMutableTreeNode)?.userObject as? CallerNode ?: return
+        val callSite = node.caller?.callSites?.firstOrNull()
+        popup.cancel()
+        if (callSite != null) {
+            OpenFileDescriptor(project, callSite.file, callSite.offset).navigate(true)
+        }
+        else {
+            (node.function as? Navigatable)?.navigate(true)
+        }
+    }
+
+    private class Renderer : ColoredTreeCellRenderer() {
+        override fun customizeCellRenderer(tree: JTree, value: Any?, selected: Boolean, expanded: Boolean,
+                                           leaf: Boolean, row: Int, hasFocus: Boolean) {
+            val userObject = (value as? DefaultMutableTreeNode)?.userObject
+            if (userObject !is CallerNode) {
+                append(userObject.toString(), SimpleTextAttributes.GRAYED_ATTRIBUTES)
+                return
+            }
+            append(userObject.name, SimpleTextAttributes.REGULAR_ATTRIBUTES)
+            val calls = userObject.caller?.callSites?.size ?: 0
+            if (calls > 1) {
+                append("  $calls calls", SimpleTextAttributes.GRAYED_ATTRIBUTES)
+            }
+            if (userObject.recursive) {
+                append("  recursive", SimpleTextAttributes.GRAYED_ITALIC_ATTRIBUTES)
+            }
+            when (userObject.state) {
+                State.LOADED -> if (userObject.function != null && (value as DefaultMutableTreeNode).childCount == 0) {
+                    append("  no callers", SimpleTextAttributes.GRAYED_ITALIC_ATTRIBUTES)
+                }
+                State.FAILED -> append("  search failed", SimpleTextAttributes.ERROR_ATTRIBUTES)
+                else -> {}
+            }
+        }
+    }
+
+    companion object {
+        private const val SEARCHING = "Searching..."
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.volkov.znavi.ui
+
+import com.github.volkov.znavi.parameters.TraceNode
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.actionSystem.CommonShortcuts
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.fileEditor.OpenFileDescriptor
+import com.intellij.openapi.project.DumbAwareAction
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.ui.popup.JBPopup
+import com.intellij.openapi.ui.popup.JBPopupFactory
+import com.intellij.openapi.ui.popup.JBPopupListener
+import com.intellij.openapi.ui.popup.LightweightWindowEvent
+import com.intellij.ui.ColoredTreeCellRenderer
+import com.intellij.ui.DoubleClickListener
+import com.intellij.ui.ScrollPaneFactory
+import com.intellij.ui.SimpleTextAttributes
+import com.intellij.ui.awt.RelativePoint
+import com.intellij.ui.treeStructure.Tree
+import com.intellij.util.ui.JBUI
+import java.awt.BorderLayout
+import java.awt.event.MouseEvent
+import java.util.IdentityHashMap
+import javax.swing.JLabel
+import javax.swing.JPanel
+import javax.swing.JTree
+import javax.swing.tree.DefaultMutableTreeNode
+import javax.swing.tree.DefaultTreeModel
+import javax.swing.tree.TreePath
+
+/**
+ * Data flow trace tree, nodes are streamed with [add] from any thread, parents before children.
+ * Enter navigates to the argument.
+ */
+class DataFlowTreePopup(private val project: Project, title: String) {
+
+    private val treeNodes = IdentityHashMap<TraceNode, DefaultMutableTreeNode>()
+    private val model = DefaultTreeModel(null)
+    private val tree = Tree(model)
+    private val status = JLabel("Tracing...")
+    private val popup: JBPopup
+
+    init {
+        tree.showsRootHandles = true
+        tree.cellRenderer = Renderer()
+        val panel = JPanel(BorderLayout())
+        panel.add(ScrollPaneFactory.createScrollPane(tree, true), BorderLayout.CENTER)
+        status.border = JBUI.Borders.empty(2, 4)
+        panel.add(status, BorderLayout.SOUTH)
+        object : DoubleClickListener() {
+            override fun onDoubleClick(event: MouseEvent): Boolean {
+                navigateToSelected()
+                return true
+            }
+        }.installOn(tree)
+        object : DumbAwareAction() {
+            override fun actionPerformed(e: AnActionEvent) = navigateToSelected()
+        }.registerCustomShortcutSet(CommonShortcuts.ENTER, tree)
+
+        popup = JBPopupFactory.getInstance().createComponentPopupBuilder(panel, tree)
+            .setTitle(title)
+            .setMovable(true)
+            .setResizable(true)
+            .setRequestFocus(true)
+            .setMinSize(JBUI.size(400, 200))
+            .createPopup()
+    }
+
+    val isDisposed: Boolean
+        get() = popup.isDisposed
+
+    fun show(position: RelativePoint) = popup.show(position)
+
+    fun addCloseListener(listener: () -> Unit) {
+        popup.addListener(object : JBPopupListener {
+            override fun onClosed(event: LightweightWindowEvent) = listener()
+        })
+    }
+
+    fun add(node: TraceNode) {
+        ApplicationManager.getApplication().invokeLater({ doAdd(node) }, { popup.isDisposed })
+    }
+
+    /**
+     * Should be called in EDT.
+     */
+    fun setStatus(text: String) {
+        status.text = text
+    }
+
+    private fun doAdd(node: TraceNode) {
+        val treeNode = DefaultMutableTreeNode(node)
+        treeNodes[node] = treeNode
+        val parent = node.parent?.let { treeNodes[it] }
+        if (parent == null) {
+            model.setRoot(treeNode)
+            tree.selectionPath = TreePath(treeNode.path)
+            return
+        }
+        parent.add(treeNode)
+        model.nodesWereInserted(parent, intArrayOf(parent.childCount - 1))
+        tree.expandPath(TreePath(parent.path))
+    }
+
+    private fun navigateToSelected() {
+        val node = (tree.lastSelectedPathComponent as? DefaultMutableTreeNode)?.userObject as? TraceNode ?: return
+        val callSite = node.callSite ?: return
+        popup.cancel()
+        OpenFileDescriptor(project, callSite.file, callSite.offset).navigate(true)
+    }
+
+    private class Renderer : ColoredTreeCellRenderer() {
+        override fun customizeCellRenderer(tree: JTree, value: Any?, selected: Boolean, expanded: Boolean,
+                                           leaf: Boolean, row: Int, hasFocus: Boolean) {
+            val node = (value as? DefaultMutableTreeNode)?.userObject as? TraceNode ?: return
+            append(node.name, if (node.parent == null) SimpleTextAttributes.REGULAR_BOLD_ATTRIBUTES else SimpleTextAttributes.REGULAR_ATTRIBUTES)
+            if (node.detail != null) {
+                append("  ${node.detail}", SimpleTextAttributes.REGULAR_ITALIC_ATTRIBUTES)
+            }
+            when (node.state) {
+                TraceNode.State.CYCLE -> append("  cycle", SimpleTextAttributes.GRAYED_ITALIC_ATTRIBUTES)
+                TraceNode.State.TRACED_ELSEWHERE -> append("  traced elsewhere", SimpleTextAttributes.GRAYED_ITALIC_ATTRIBUTES)
+                TraceNode.State.DEPTH_LIMIT -> append("  depth limit", SimpleTextAttributes.GRAYED_ITALIC_ATTRIBUTES)
+                TraceNode.State.TRACED -> {}
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.volkov.znavi.ui
+
+import com.github.volkov.znavi.diagnostics.NavigationKind
+import com.github.volkov.znavi.diagnostics.NavigationStats
+import com.intellij.icons.AllIcons
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.actionSystem.ActionManager
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.actionSystem.DefaultActionGroup
+import com.intellij.openapi.fileChooser.FileChooserFactory
+import com.intellij.openapi.fileChooser.FileSaverDescriptor
+import com.intellij.openapi.project.DumbAware
+import com.intellij.openapi.project.DumbAwareAction
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.ui.Messages
+import com.intellij.openapi.ui.SimpleToolWindowPanel
+import com.intellij.openapi.wm.ToolWindow
+import com.intellij.openapi.wm.ToolWindowFactory
+import com.intellij.ui.ScrollPaneFactory
+import com.intellij.ui.components.JBLabel
+import com.intellij.ui.content.ContentFactory
+import com.intellij.ui.table.JBTable
+import com.intellij.util.ui.JBUI
+import java.io.IOException
+import javax.swing.BoxLayout
+import javax.swing.JPanel
+import javax.swing.Timer
+import javax.swing.table.DefaultTableModel
+
+/**
+ * Latency tool window: percentiles of the navigation actions and cache hit rates from [NavigationStats],
+ * refreshed every second while the tool window is shown and exportable as CSV.
+ */
+class LatencyToolWindowFactory : ToolWindowFactory, DumbAware {
+
+    override fun createToolWindowContent(project: Project, toolWindow: ToolWindow) {
+        val panel = LatencyPanel(project)
+        val content = ContentFactory.SERVICE.getInstance().createContent(panel, null, false)
+        content.setDisposer(panel)
+        toolWindow.contentManager.addContent(content)
+    }
+
+    private class LatencyPanel(private val project: Project) : SimpleToolWindowPanel(true, true), Disposable {
+        private val actionsModel = ReadOnlyModel(ACTION_COLUMNS)
+        private val cachesModel = ReadOnlyModel(CACHE_COLUMNS)
+        private val timer = Timer(REFRESH_MS) { if (isShowing) refresh() }
+
+        init {
+            val tables = JPanel().apply {
+                layout = BoxLayout(this, BoxLayout.Y_AXIS)
+                add(section("Actions", JBTable(actionsModel)))
+                add(section("Caches", JBTable(cachesModel)))
+            }
+            setContent(ScrollPaneFactory.createScrollPane(tables, true))
+            val group = DefaultActionGroup(
+                object : DumbAwareAction("Refresh", null, AllIcons.Actions.Refresh) {
+                    override fun actionPerformed(e: AnActionEvent) = refresh()
+                },
+                object : DumbAwareAction("Reset", null, AllIcons.Actions.GC) {
+                    override fun actionPerformed(e: AnActionEvent) {
+                        NavigationStats.getInstance().reset()
+                        refresh()
+                    }
+                },
+                object : DumbAwareAction("Export CSV", null, AllIcons.ToolbarDecorator.Export) {
+                    override fun actionPerformed(e: AnActionEvent) = export()
+                }
+            )
+            val toolbar = ActionManager.getInstance().createActionToolbar("ZNaviLatency", group, true)
+            toolbar.setTargetComponent(this)
+            setToolbar(toolbar.component)
+            refresh()
+            timer.start()
+        }
+
+        private fun section(title: String, table: JBTable): JPanel = JPanel().apply {
+            layout = BoxLayout(this, BoxLayout.Y_AXIS)
+            border = JBUI.Borders.empty(4)
+            add(JBLabel(title))
+            add(table.tableHeader)
+            add(table)
+        }
+
+        private fun refresh() {
+            val stats = NavigationStats.getInstance()
+            actionsModel.rowCount = 0
+            for (kind in NavigationKind.values()) {
+                val s = stats.stats(kind)
+                val count = s.latency.size
+                actionsModel.addRow(arrayOf(
+                    kind.title, kind.shortcut, count,
+                    NavigationStats.format(s.latency.percentileMillis(50.0)),
+                    NavigationStats.format(s.latency.percentileMillis(95.0)),
+                    NavigationStats.format(s.latency.percentileMillis(99.0)),
+                    NavigationStats.format(if (count == 0L) 0.0 else s.usages.get().toDouble() / count),
+                    s.cancelled.get(),
+                    NavigationStats.format(s.edtNanos.get() / 1_000_000.0)
+                ))
+            }
+            cachesModel.rowCount = 0
+            for ((name, cache) in stats.caches()) {
+                cachesModel.addRow(arrayOf(name, cache.hits.get(), cache.misses.get(), "${NavigationStats.format(cache.hitRate * 100)}%"))
+            }
+        }
+
+        private fun export() {
+            val descriptor = FileSaverDescriptor("Export ZNavi Latency", "Latency percentiles and cache hit rates", "csv")
+            val wrapper = FileChooserFactory.getInstance().createSaveFileDialog(descriptor, project).save(null, "znavi-latency.csv") ?: return
+            try {
+                wrapper.file.writeText(NavigationStats.getInstance().toCsv())
+            } catch (e: IOException) {
+                Messages.showErrorDialog(project, e.message, "Export ZNavi Latency")
+            }
+        }
+
+        override fun dispose() {
+            timer.stop()
+        }
+    }
+
+    private class ReadOnlyModel(columns: Array<String>) : DefaultTableModel(columns, 0) {
+        override fun isCellEditable(row: Int, column: Int): Boolean = false
+    }
+
+    companion object {
+        private const val REFRESH_MS = 1000
+        private val ACTION_COLUMNS =
+            arrayOf("Action", "Shortcut", "Searches", "p50 ms", "p95 ms", "p99 ms", "Avg usages", "Cancelled", "EDT ms")
+        private val CACHE_COLUMNS = arrayOf("Cache", "Hits", "Misses", "Hit rate")
+    }
+}
@@ -0,0 +1,251 @@
+package com.github.volkov.znavi.ui
+
+import com.github.volkov.znavi.search.UsageOffset
+import com.intellij.openapi.actionSystem.ActionManager
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.actionSystem.CommonShortcuts
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.fileEditor.FileDocumentManager
+import com.intellij.openapi.fileEditor.OpenFileDescriptor
+import com.intellij.openapi.project.DumbAwareAction
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.ui.ComboBox
+import com.intellij.openapi.ui.popup.JBPopup
+import com.intellij.openapi.ui.popup.JBPopupFactory
+import com.intellij.openapi.util.TextRange
+import com.intellij.ui.CollectionListModel
+import com.intellij.ui.ColoredListCellRenderer
+import com.intellij.ui.DoubleClickListener
+import com.intellij.ui.HyperlinkLabel
+import com.intellij.ui.ScrollPaneFactory
+import com.intellij.ui.SimpleTextAttributes
+import com.intellij.ui.awt.RelativePoint
+import com.intellij.ui.components.JBList
+import com.intellij.util.ui.JBUI
+import java.awt.BorderLayout
+import java.awt.event.MouseEvent
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicBoolean
+import javax.swing.JLabel
+import javax.swing.JList
+import javax.swing.JPanel
+import javax.swing.ListSelectionModel
+
+/**
+ * Row of [UsageOffsetPopup]: usage with the target it belongs to and an optional extra column.
+ */
+class UsageOffsetRow(val usage: UsageOffset, val tag: String?, val detail: String?, val line: Int, val text: String) {
+
+    companion object {
+        /**
+         * Creates row with line presentation, should be called in background, loads the document if needed.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun create(usage: UsageOffset, tag: String?, detail: String? = null): UsageOffsetRow {
+            return ReadAction.compute<UsageOffsetRow, RuntimeException> {
+                val document = FileDocumentManager.getInstance().getDocument(usage.file)
+                if (document == null || usage.offset > document.textLength) {
+                    UsageOffsetRow(usage, tag, detail, -1, "")
+                }
+                else {
+                    val line = document.getLineNumber(usage.offset)
+                    val range = TextRange(document.getLineStartOffset(line), document.getLineEndOffset(line))
+                    UsageOffsetRow(usage, tag, detail, line, document.getText(range).trim())
+                }
+            }
+        }
+    }
+}
+
+/**
+ * Lightweight usages popup over [UsageOffsetRow]s, rows are streamed with [add] from any thread.
+ *
+ * Rows can be tagged with their target, picking a target in the combo box only filters rows which are already loaded.
+ * Enter navigates to the selected row, alt-U/alt-I shortcuts walk over the rows keeping the popup open.
+ * If [fullSearch] is given the popup has a link which closes it and runs the complete usages search.
+ */
+class UsageOffsetPopup(
+    private val project: Project,
+    title: String,
+    tags: List<String>,
+    fullSearch: Runnable? = null
+) {
+
+    private val allRows = ArrayList<UsageOffsetRow>()
+    private val pending = ConcurrentLinkedQueue<UsageOffsetRow>()
+    private val flushScheduled = AtomicBoolean()
+    private val model = CollectionListModel<UsageOffsetRow>()
+    private val list = JBList(model)
+    private val status = JLabel()
+    private val tagFilter: ComboBox<String>?
+    private val popup: JBPopup
+    private var finished = false
+
+    /**
+     * Tag picked by user, `null` means all targets.
+     */
+    var selectedTag: String? = null
+        private set
+
+    init {
+        list.selectionMode = ListSelectionModel.SINGLE_SELECTION
+        list.cellRenderer = RowRenderer()
+        val panel = JPanel(BorderLayout())
+        panel.add(ScrollPaneFactory.createScrollPane(list, true), BorderLayout.CENTER)
+        status.border = JBUI.Borders.empty(2, 4)
+        val south = JPanel(BorderLayout())
+        south.add(status, BorderLayout.CENTER)
+        if (fullSearch != null) {
+            val link = HyperlinkLabel(FULL_SEARCH)
+            link.border = JBUI.Borders.empty(2, 4)
+            link.addHyperlinkListener {
+                popup.cancel()
+                fullSearch.run()
+            }
+            south.add(link, BorderLayout.EAST)
+        }
+        panel.add(south, BorderLayout.SOUTH)
+        tagFilter = if (tags.size > 1) ComboBox((listOf(ALL_TARGETS) + tags).toTypedArray()) else null
+        if (tagFilter != null) {
+            tagFilter.addActionListener {
+                selectedTag = (tagFilter.selectedItem as String).takeIf { it != ALL_TARGETS }
+                refilter()
+            }
+            panel.add(tagFilter, BorderLayout.NORTH)
+        }
+        object : DoubleClickListener() {
+            override fun onDoubleClick(event: MouseEvent): Boolean {
+                navigateToSelected(true)
+                return true
+            }
+        }.installOn(list)
+        object : DumbAwareAction() {
+            override fun actionPerformed(e: AnActionEvent) = navigateToSelected(true)
+        }.registerCustomShortcutSet(CommonShortcuts.ENTER, list)
+        registerStep(DOWN_ACTION_ID, 1)
+        registerStep(UP_ACTION_ID, -1)
+
+        popup = JBPopupFactory.getInstance().createComponentPopupBuilder(panel, list)
+            .setTitle(title)
+            .setMovable(true)
+            .setResizable(true)
+            .setRequestFocus(true)
+            .setMinSize(JBUI.size(400, 100))
+            .createPopup()
+        updateStatus()
+    }
+
+    val isDisposed: Boolean
+        get() = popup.isDisposed
+
+    val isVisible: Boolean
+        get() = popup.isVisible
+
+    fun show(position: RelativePoint) {
+        if (!popup.isDisposed && !popup.isVisible) {
+            popup.show(position)
+        }
+    }
+
+    fun cancel() = popup.cancel()
+
+    fun add(row: UsageOffsetRow) {
+        pending.add(row)
+        if (flushScheduled.compareAndSet(false, true)) {
+            ApplicationManager.getApplication().invokeLater({ flush() }, { popup.isDisposed })
+        }
+    }
+
+    /**
+     * Marks search as finished, should be called in EDT after the last [add].
+     */
+    fun finish() {
+        flush()
+        finished = true
+        updateStatus()
+    }
+
+    /**
+     * All loaded rows passing the current target filter, in popup order.
+     */
+    fun visibleRows(): List<UsageOffsetRow> {
+        flush()
+        return model.items.toList()
+    }
+
+    private fun flush() {
+        flushScheduled.set(false)
+        val added = ArrayList<UsageOffsetRow>()
+        while (true) {
+            added.add(pending.poll() ?: break)
+        }
+        if (added.isEmpty()) return
+        allRows.addAll(added)
+        allRows.sortWith(ROW_ORDER)
+        refilter()
+    }
+
+    private fun refilter() {
+        val selected = list.selectedValue
+        model.replaceAll(allRows.filter { selectedTag == null || it.tag == selectedTag })
+        val index = if (selected == null) 0 else model.getElementIndex(selected)
+        if (model.size > 0) {
+            list.selectedIndex = if (index < 0) 0 else index
+        }
+        updateStatus()
+    }
+
+    private fun updateStatus() {
+        val count = model.size
+        status.text = if (finished) "Found $count usages" else "Showing $count usages, searching..."
+    }
+
+    private fun registerStep(actionId: String, direction: Int) {
+        val action = ActionManager.getInstance().getAction(actionId) ?: return
+        object : DumbAwareAction() {
+            override fun actionPerformed(e: AnActionEvent) {
+                if (model.size == 0) return
+                val current = list.selectedIndex
+                list.selectedIndex = if (current < 0) 0 else (current + direction + model.size) % model.size
+                list.ensureIndexIsVisible(list.selectedIndex)
+                navigateToSelected(false)
+            }
+        }.registerCustomShortcutSet(action.shortcutSet, list)
+    }
+
+    private fun navigateToSelected(close: Boolean) {
+        val row = list.selectedValue ?: return
+        if (close) {
+            popup.cancel()
+        }
+        OpenFileDescriptor(project, row.usage.file, row.usage.offset).navigate(close)
+    }
+
+    private class RowRenderer : ColoredListCellRenderer<UsageOffsetRow>() {
+        override fun customizeCellRenderer(list: JList<out UsageOffsetRow>, value: UsageOffsetRow, index: Int,
+                                           selected: Boolean, hasFocus: Boolean) {
+            icon = value.usage.file.fileType.icon
+            if (value.tag != null) {
+                append("[${value.tag}] ", SimpleTextAttributes.GRAYED_ATTRIBUTES)
+            }
+            append(value.usage.file.name, SimpleTextAttributes.REGULAR_BOLD_ATTRIBUTES)
+            append(":${value.line + 1}  ", SimpleTextAttributes.GRAYED_ATTRIBUTES)
+            if (value.detail != null) {
+                append(value.detail, SimpleTextAttributes.REGULAR_ITALIC_ATTRIBUTES)
+                append("  ")
+            }
+            append(value.text, SimpleTextAttributes.REGULAR_ATTRIBUTES)
+        }
+    }
+
+    companion object {
+        const val DOWN_ACTION_ID = "com.github.volkov.znavi.ZNaviDownAction"
+        const val UP_ACTION_ID = "com.github.volkov.znavi.ZNaviUpAction"
+        private const val ALL_TARGETS = "All targets"
+        private const val FULL_SEARCH = "Full search"
+
+        private val ROW_ORDER = Comparator<UsageOffsetRow> { r1, r2 -> UsageOffset.ORDER.compare(r1.usage, r2.usage) }
+    }
+}
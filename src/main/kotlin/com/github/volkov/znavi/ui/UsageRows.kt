@@ -0,0 +1,122 @@
+package com.github.volkov.znavi.ui
+
+import com.intellij.ide.util.gotoByName.ModelDiff
+import java.util.function.Function
+import java.util.function.Predicate
+
+/**
+ * Order of the rows of the show usages table: usages first, then the separators by [weight],
+ * comparable usages by their natural order, the rest by file name, location in the same file and path.
+ *
+ * The platform types are behind the abstract accessors, so the JMH benchmarks in `src/jmh` compare synthetic rows
+ * with the same code as the `UsageNodeComparator` of `ShowUsagesActionClone`.
+ */
+abstract class UsageRowComparator<R, F> : Comparator<R> {
+
+    override fun compare(r1: R, r2: R): Int {
+        val weight1 = weight(r1)
+        val weight2 = weight(r2)
+        if (weight1 != weight2) return weight1 - weight2
+
+        val u1 = usage(r1)
+        val u2 = usage(r2)
+        if (u1 is Comparable<*> && u2 is Comparable<*>) {
+            @Suppress("UNCHECKED_CAST")
+            return (u1 as Comparable<Any>).compareTo(u2)
+        }
+
+        val f1 = file(r1)
+        val f2 = file(r2)
+        val byName = compareNullable(f1?.let { fileName(it) }, f2?.let { fileName(it) })
+        if (byName != 0) return byName
+        return if (f1 == f2) compareInFile(r1, r2) else compareNullable(f1?.let { path(it) }, f2?.let { path(it) })
+    }
+
+    /**
+     * [USAGE] for usages, [MORE_USAGES], [OUTSIDE_SCOPE] or [FILTERED_OUT] for the separators.
+     */
+    protected abstract fun weight(row: R): Int
+
+    protected abstract fun usage(row: R): Any?
+
+    protected abstract fun file(row: R): F?
+
+    protected abstract fun fileName(file: F): String
+
+    protected abstract fun path(file: F): String
+
+    protected abstract fun compareInFile(r1: R, r2: R): Int
+
+    companion object {
+        const val USAGE = 0
+        const val MORE_USAGES = 1
+        const val OUTSIDE_SCOPE = 2
+        const val FILTERED_OUT = 3
+
+        private fun compareNullable(s1: String?, s2: String?): Int = when {
+            s1 === s2 -> 0
+            s1 == null -> -1
+            s2 == null -> 1
+            else -> s1.compareTo(s2)
+        }
+    }
+}
+
+/**
+ * Data path of the show usages table which does not need the IDE, benchmarked by the JMH benchmarks in `src/jmh`.
+ */
+object UsageRows {
+
+    /**
+     * Sort key of a usage: texts of its [groups] from the outermost one, each after `|`, then `|` and the [usage].
+     */
+    @JvmStatic
+    fun groupPathKey(groups: List<String>, usage: String): String {
+        val key = StringBuilder(groups.sumBy { it.length + 1 } + usage.length + 1)
+        for (group in groups) {
+            key.append('|').append(group)
+        }
+        return key.append('|').append(usage).toString()
+    }
+
+    /**
+     * Stable sort of [items] by [key], computing the key of each item once instead of on every comparison.
+     */
+    @JvmStatic
+    fun <T> sortByKey(items: MutableList<T>, key: Function<in T, String>) = sortByKey(items, key, naturalOrder())
+
+    /**
+     * Stable sort of [items] by [key] in [order], items without a key go last.
+     */
+    @JvmStatic
+    fun <T, K : Any> sortByKey(items: MutableList<T>, key: Function<in T, out K?>, order: Comparator<in K>) {
+        if (items.size < 2) return
+        val keyed = items.map { it to key.apply(it) }.sortedWith(compareBy(nullsLast(order)) { it.second })
+        for (i in keyed.indices) {
+            items[i] = keyed[i].first
+        }
+    }
+
+    @JvmStatic
+    fun <T> count(items: List<T>, predicate: Predicate<in T>): Int {
+        var count = 0
+        for (item in items) {
+            if (predicate.test(item)) count++
+        }
+        return count
+    }
+
+    /**
+     * Applies the difference between [old] and [new] rows to [model], returns the [selection] moved with its row.
+     */
+    @JvmStatic
+    fun updateModel(model: ModelDiff.Model<Any>, old: List<Any>, new: List<Any>, selection: Int): Int {
+        val cmds = ModelDiff.createDiffCmds(model, old.toTypedArray(), new.toTypedArray()) ?: return selection
+        var result = selection
+        for (cmd in cmds) {
+            result = cmd.translateSelection(result)
+            cmd.apply()
+        }
+        return result
+    }
+}
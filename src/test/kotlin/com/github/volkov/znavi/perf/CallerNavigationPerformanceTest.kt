@@ -0,0 +1,32 @@
+package com.github.volkov.znavi.perf
+
+import com.github.volkov.znavi.callers.CallerGraph
+import com.github.volkov.znavi.perf.NavigationPerformanceTestCase.Language.JAVA
+import com.github.volkov.znavi.perf.NavigationPerformanceTestCase.Language.KOTLIN
+import com.github.volkov.znavi.perf.NavigationPerformanceTestCase.Size.LARGE
+import com.github.volkov.znavi.perf.NavigationPerformanceTestCase.Size.MEDIUM
+import com.github.volkov.znavi.perf.NavigationPerformanceTestCase.Size.SMALL
+import com.intellij.openapi.progress.EmptyProgressIndicator
+
+/**
+ * Callers of containing method (alt-H): the caller index lookup and grouping by calling function,
+ * the popup itself is not shown in tests.
+ */
+class CallerNavigationPerformanceTest : NavigationPerformanceTestCase() {
+
+    fun testCallersJava10() = callers(JAVA, SMALL, 200)
+    fun testCallersJava1000() = callers(JAVA, MEDIUM, 1_000)
+    fun testCallersJava10000() = callers(JAVA, LARGE, 8_000)
+    fun testCallersKotlin10() = callers(KOTLIN, SMALL, 300)
+    fun testCallersKotlin1000() = callers(KOTLIN, MEDIUM, 2_000)
+    fun testCallersKotlin10000() = callers(KOTLIN, LARGE, 15_000)
+
+    private fun callers(language: Language, size: Size, expectedMs: Int) {
+        val fixture = generate(language, size)
+        val graph = CallerGraph.getInstance(project)
+        measure("callers ${language.name.toLowerCase()} ${size.usages} usages", expectedMs, {}) {
+            val callers = graph.callers(fixture.target, EmptyProgressIndicator())
+            assertEquals(size.usages, callers.sumBy { it.callSites.size })
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.volkov.znavi.perf
+
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.openapi.fileEditor.FileEditorManager
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiFile
+import com.intellij.testFramework.PlatformTestUtil
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase
+import com.intellij.util.ThrowableRunnable
+
+/**
+ * Base of the navigation performance tests: generates a target method called [Size.usages] times from caller methods,
+ * [CALLS_PER_FILE] per file, in java or kotlin, and times actions against it with warm-up and expected time baselines.
+ *
+ * The tests are run by `gradle perfTest`, the regular `test` task skips them.
+ */
+abstract class NavigationPerformanceTestCase : LightJavaCodeInsightFixtureTestCase() {
+
+    enum class Language { JAVA, KOTLIN }
+
+    enum class Size(val usages: Int) { SMALL(10), MEDIUM(1_000), LARGE(10_000) }
+
+    protected class Fixture(val target: PsiElement, val callerFile: PsiFile, val callOffsets: List<Int>)
+
+    /**
+     * Generates the project, opens the first caller file with the caret on the first call and returns the target.
+     */
+    protected fun generate(language: Language, size: Size): Fixture {
+        val files = (size.usages + CALLS_PER_FILE - 1) / CALLS_PER_FILE
+        val targetFile = when (language) {
+            Language.JAVA -> myFixture.addFileToProject("perf/Target.java",
+                "package perf;\n\npublic class Target {\n    public static void target(int value, String name) {\n    }\n}\n")
+            Language.KOTLIN -> myFixture.addFileToProject("perf/Target.kt",
+                "package perf\n\nobject Target {\n    fun target(value: Int, name: String) {\n    }\n}\n")
+        }
+        var firstCaller: PsiFile? = null
+        for (file in 0 until files) {
+            val calls = minOf(CALLS_PER_FILE, size.usages - file * CALLS_PER_FILE)
+            val callerFile = myFixture.addFileToProject(callerPath(language, file), callerText(language, file, calls))
+            if (firstCaller == null) firstCaller = callerFile
+        }
+        val callerFile = firstCaller!!
+        myFixture.configureFromExistingVirtualFile(callerFile.virtualFile)
+        val text = callerFile.text
+        val offsets = generateSequence(text.indexOf(CALL)) { text.indexOf(CALL, it + 1).takeIf { next -> next >= 0 } }
+            .map { it + CALL.length - "target(".length }
+            .toList()
+        myFixture.editor.caretModel.moveToOffset(offsets.first())
+        val target = myFixture.elementAtCaret
+        assertTrue(targetFile.isValid)
+        return Fixture(target, myFixture.file, offsets)
+    }
+
+    /**
+     * Times [test] with [WARMUP] warm-up iterations and [ATTEMPTS] measured attempts against [expectedMs].
+     */
+    protected fun measure(name: String, expectedMs: Int, setup: () -> Unit, test: () -> Unit) {
+        PlatformTestUtil.startPerformanceTest(name, expectedMs, ThrowableRunnable<Throwable> { test() })
+            .setup(ThrowableRunnable<Throwable> { setup() })
+            .warmupIterations(WARMUP)
+            .attempts(ATTEMPTS)
+            .assertTiming()
+    }
+
+    /**
+     * Dispatches EDT events until [condition] holds, the actions finish asynchronously.
+     */
+    protected fun waitFor(condition: () -> Boolean) {
+        val deadline = System.currentTimeMillis() + TIMEOUT_MS
+        while (!condition()) {
+            assertTrue("Timed out waiting for navigation", System.currentTimeMillis() < deadline)
+            PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue()
+            Thread.sleep(1)
+        }
+    }
+
+    /**
+     * File and caret offset of the selected editor, changes when an action navigates.
+     */
+    protected fun selectedLocation(): Pair<String?, Int> {
+        val editor = FileEditorManager.getInstance(project).selectedTextEditor ?: myFixture.editor
+        return FileEditorManager.getInstance(project).selectedFiles.firstOrNull()?.path to editor.caretModel.offset
+    }
+
+    /**
+     * Appends a space to the end of [file], which drops per file caches without moving the calls.
+     */
+    protected fun touch(file: PsiFile) {
+        WriteCommandAction.runWriteCommandAction(project) {
+            val document = PsiDocumentManager.getInstance(project).getDocument(file)!!
+            document.insertString(document.textLength, " ")
+            PsiDocumentManager.getInstance(project).commitDocument(document)
+        }
+    }
+
+    private fun callerPath(language: Language, file: Int): String =
+        if (language == Language.JAVA) "perf/Caller$file.java" else "perf/Caller$file.kt"
+
+    private fun callerText(language: Language, file: Int, calls: Int): String = buildString {
+        when (language) {
+            Language.JAVA -> {
+                append("package perf;\n\npublic class Caller").append(file).append(" {\n")
+                for (i in 0 until calls) {
+                    append("    void m").append(i).append("() {\n        ").append(CALL).append(i).append(", \"m").append(i).append("\");\n    }\n")
+                }
+            }
+            Language.KOTLIN -> {
+                append("package perf\n\nclass Caller").append(file).append(" {\n")
+                for (i in 0 until calls) {
+                    append("    fun m").append(i).append("() {\n        ").append(CALL).append(i).append(", \"m").append(i).append("\")\n    }\n")
+                }
+            }
+        }
+        append("}\n")
+    }
+
+    companion object {
+        const val CALLS_PER_FILE = 100
+        private const val CALL = "Target.target("
+        private const val WARMUP = 2
+        private const val ATTEMPTS = 5
+        private const val TIMEOUT_MS = 60_000L
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.volkov.znavi.perf
+
+import com.github.volkov.znavi.parameters.ParameterResolver
+import com.github.volkov.znavi.perf.NavigationPerformanceTestCase.Language.JAVA
+import com.github.volkov.znavi.perf.NavigationPerformanceTestCase.Language.KOTLIN
+import com.github.volkov.znavi.perf.NavigationPerformanceTestCase.Size.LARGE
+import com.github.volkov.znavi.perf.NavigationPerformanceTestCase.Size.MEDIUM
+import com.github.volkov.znavi.perf.NavigationPerformanceTestCase.Size.SMALL
+import com.intellij.openapi.application.ReadAction
+import com.intellij.psi.PsiNamedElement
+
+/**
+ * Go to parameter declaration (alt-O) on every argument of the caret file, up to [CALLS_PER_FILE] calls.
+ * The file is touched before each attempt, so the per file conversion and call site caches start empty.
+ */
+class ParameterNavigationPerformanceTest : NavigationPerformanceTestCase() {
+
+    fun testParameterJava10() = parameters(JAVA, SMALL, 100)
+    fun testParameterJava1000() = parameters(JAVA, MEDIUM, 500)
+    fun testParameterJava10000() = parameters(JAVA, LARGE, 500)
+    fun testParameterKotlin10() = parameters(KOTLIN, SMALL, 300)
+    fun testParameterKotlin1000() = parameters(KOTLIN, MEDIUM, 1_500)
+    fun testParameterKotlin10000() = parameters(KOTLIN, LARGE, 1_500)
+
+    private fun parameters(language: Language, size: Size, expectedMs: Int) {
+        val fixture = generate(language, size)
+        val arguments = fixture.callOffsets.flatMap { listOf(it + FIRST_ARGUMENT, it + FIRST_ARGUMENT + SECOND_ARGUMENT) }
+        measure("parameters ${language.name.toLowerCase()} ${size.usages} usages", expectedMs, { touch(fixture.callerFile) }) {
+            ReadAction.run<RuntimeException> {
+                arguments.forEachIndexed { i, offset ->
+                    val parameter = ParameterResolver.findParameter(fixture.callerFile, offset)
+                    // the arguments alternate between `target(value, name)` parameters
+                    val expected = if (i % 2 == 0) "value" else "name"
+                    assertEquals("Parameter of argument $i", expected, (parameter as? PsiNamedElement)?.name)
+                }
+            }
+        }
+    }
+
+    companion object {
+        /** From the method name to the first argument, `target(`. */
+        private const val FIRST_ARGUMENT = 7
+
+        /** From the first argument to the second one, which is after at most 2 digits and `, `. */
+        private const val SECOND_ARGUMENT = 4
+    }
+}
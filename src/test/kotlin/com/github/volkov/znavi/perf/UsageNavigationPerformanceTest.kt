@@ -0,0 +1,89 @@
+package com.github.volkov.znavi.perf
+
+import com.github.volkov.znavi.perf.NavigationPerformanceTestCase.Language.JAVA
+import com.github.volkov.znavi.perf.NavigationPerformanceTestCase.Language.KOTLIN
+import com.github.volkov.znavi.perf.NavigationPerformanceTestCase.Size.LARGE
+import com.github.volkov.znavi.perf.NavigationPerformanceTestCase.Size.MEDIUM
+import com.github.volkov.znavi.perf.NavigationPerformanceTestCase.Size.SMALL
+import com.github.volkov.znavi.diagnostics.TraceLevel
+import com.github.volkov.znavi.diagnostics.TracePhase
+import com.github.volkov.znavi.diagnostics.ZNaviTrace
+import com.github.volkov.znavi.search.SearchStrategy
+import com.intellij.openapi.fileEditor.FileEditorManager
+import com.intellij.openapi.util.registry.Registry
+
+/**
+ * Next (alt-U) and previous (alt-I) usage: the whole action from `actionPerformed` to the caret at the next usage.
+ *
+ * The search strategy is pinned by `znavi.search.strategy`, otherwise the planner history of the warm-up iterations
+ * could change it for the measured ones: the large projects use the file local search the planner picks for them,
+ * the rest a serial one. The full searches of the large projects are measured with the fast index based navigation
+ * turned off, so that the pinned strategy does the search. The plan is checked in the navigation trace.
+ */
+class UsageNavigationPerformanceTest : NavigationPerformanceTestCase() {
+
+    override fun setUp() {
+        super.setUp()
+        Registry.get(TRACE_LEVEL_KEY).setValue(TraceLevel.INFO.name)
+    }
+
+    override fun tearDown() {
+        try {
+            for (key in listOf(STRATEGY_KEY, FAST_REFERENCES_KEY, TRACE_LEVEL_KEY)) {
+                Registry.get(key).resetToDefault()
+            }
+            ZNaviTrace.clear()
+        } finally {
+            super.tearDown()
+        }
+    }
+
+    fun testNextUsageJava10() = navigate(JAVA, SMALL, NEXT, 300)
+    fun testNextUsageJava1000() = navigate(JAVA, MEDIUM, NEXT, 1_500)
+    fun testNextUsageJava10000() = navigate(JAVA, LARGE, NEXT, 10_000)
+    fun testNextUsageJava10000Serial() = navigate(JAVA, LARGE, NEXT, 20_000, SearchStrategy.SERIAL)
+    fun testPreviousUsageJava10() = navigate(JAVA, SMALL, PREVIOUS, 300)
+    fun testPreviousUsageJava1000() = navigate(JAVA, MEDIUM, PREVIOUS, 1_500)
+    fun testPreviousUsageJava10000() = navigate(JAVA, LARGE, PREVIOUS, 10_000)
+    fun testNextUsageKotlin10() = navigate(KOTLIN, SMALL, NEXT, 500)
+    fun testNextUsageKotlin1000() = navigate(KOTLIN, MEDIUM, NEXT, 3_000)
+    fun testNextUsageKotlin10000() = navigate(KOTLIN, LARGE, NEXT, 20_000)
+    fun testNextUsageKotlin10000Parallel() = navigate(KOTLIN, LARGE, NEXT, 40_000, SearchStrategy.PARALLEL)
+    fun testPreviousUsageKotlin10() = navigate(KOTLIN, SMALL, PREVIOUS, 500)
+    fun testPreviousUsageKotlin1000() = navigate(KOTLIN, MEDIUM, PREVIOUS, 3_000)
+    fun testPreviousUsageKotlin10000() = navigate(KOTLIN, LARGE, PREVIOUS, 20_000)
+
+    private fun navigate(language: Language, size: Size, actionId: String, expectedMs: Int, fullSearch: SearchStrategy? = null) {
+        val fixture = generate(language, size)
+        val strategy = fullSearch ?: if (size == LARGE) SearchStrategy.FILE_LOCAL_FIRST else SearchStrategy.SERIAL
+        Registry.get(STRATEGY_KEY).setValue(strategy.name)
+        if (fullSearch != null) Registry.get(FAST_REFERENCES_KEY).setValue(false)
+        val start = myFixture.editor.caretModel.offset
+        var before = selectedLocation()
+        measure("$actionId ${language.name.toLowerCase()} ${size.usages} usages ${strategy.name.toLowerCase()}", expectedMs, {
+            FileEditorManager.getInstance(project).openFile(fixture.callerFile.virtualFile, true)
+            myFixture.editor.caretModel.moveToOffset(start)
+            before = selectedLocation()
+            ZNaviTrace.clear()
+        }) {
+            myFixture.performEditorAction(actionId)
+            waitFor { selectedLocation() != before }
+            assertEquals(strategy.name, plannedStrategy())
+        }
+    }
+
+    /**
+     * Strategy of the latest plan, the resolve trace record is `<target kind> <plan>`.
+     */
+    private fun plannedStrategy(): String? =
+        ZNaviTrace.records().lastOrNull { it.phase == TracePhase.RESOLVE && it.level == TraceLevel.INFO }
+            ?.message?.split(' ')?.getOrNull(1)
+
+    companion object {
+        private const val NEXT = "com.github.volkov.znavi.ZNaviDownAction"
+        private const val PREVIOUS = "com.github.volkov.znavi.ZNaviUpAction"
+        private const val STRATEGY_KEY = "znavi.search.strategy"
+        private const val FAST_REFERENCES_KEY = "znavi.fast.references"
+        private const val TRACE_LEVEL_KEY = "znavi.trace.level"
+    }
+}